@@ -2,6 +2,7 @@ plugins {
     `java-library`
     kotlin("jvm")
     id("com.vanniktech.maven.publish")
+    alias(libs.plugins.jmh)
 }
 
 dependencies {
@@ -9,12 +10,22 @@ dependencies {
     testImplementation("org.junit.jupiter:junit-jupiter:5.10.2")
     testRuntimeOnly("org.junit.platform:junit-platform-launcher")
     testImplementation(projects.processor)
+    testImplementation(libs.asm.common)
+    jmhImplementation(projects.processor)
+    jmhImplementation(libs.asm.common)
 }
 
 tasks.test {
     useJUnitPlatform()
 }
 
+// Benchmarks generate their deobfuscators with ProcessedClasses of the test source set
+jmh {
+    jmhVersion = libs.versions.jmh.get()
+    includeTests = true
+    profilers = listOf("gc")
+}
+
 tasks.register<Copy>("copyConsumerRules") {
     from("consumer-rules.pro")
     into("build/resources/main/META-INF/proguard")
@@ -5,37 +5,120 @@
 -keep,allowobfuscation class **.Deobfuscator {
     # Keep getString method - called from obfuscated code
     public static java.lang.String getString(long);
+    public static void getStrings(long[], java.lang.String[]);
 
     # Keep chunk loading infrastructure
-    private static volatile java.lang.String[] chunks;
-    private static java.lang.String loadChunk(int);
+    private static final com.androidacy.lsparanoid.ChunkTable chunks;
+    public char[] loadChunk(int);
 }
 
-# IMPORTANT: Keep ensureChunkLoaded method name - it's accessed via reflection by name
-# Do NOT allow obfuscation of this method name
--keepclassmembernames class **.Deobfuscator {
-    public static synchronized java.lang.String ensureChunkLoaded(int);
+# Keep Chunk inner classes and their load methods
+-keep,allowobfuscation class **.Deobfuscator$Chunk* {
+    static char[] load();
 }
 
-# Keep Chunk inner classes and their DATA fields
--keep,allowobfuscation class **.Deobfuscator$Chunk* {
-    static final byte[] DATA;
+# Keep the pool resource holder used in RESOURCE storage mode
+-keep,allowobfuscation class **.Deobfuscator$Pool {
+    static final char[][] CHUNKS;
+}
+
+# Keep the chunk table used by generated code
+-keep,allowobfuscation class com.androidacy.lsparanoid.ChunkTable {
+    public <init>(int, com.androidacy.lsparanoid.ChunkLoader);
+    public <init>(int, com.androidacy.lsparanoid.ChunkLoader, boolean);
+    public char[] get(int);
+    public boolean trim(int);
+    public java.util.concurrent.Future prewarm(java.util.concurrent.Executor, int[]);
+    public java.util.concurrent.Future prewarm(int[]);
+    public static java.util.concurrent.Future completedPrewarm();
+}
+-keep,allowobfuscation interface com.androidacy.lsparanoid.ChunkLoader {
+    public char[] loadChunk(int);
 }
 
 # Keep DeobfuscatorHelper methods used by generated code
 -keep,allowobfuscation class com.androidacy.lsparanoid.DeobfuscatorHelper {
     public static java.lang.String getString(long, java.lang.String[]);
     public static java.lang.String getString(long, java.lang.String[], java.lang.Class);
+    public static java.lang.String getString(long, java.lang.String[], com.androidacy.lsparanoid.ChunkLoader);
     public static java.lang.String[] loadChunksFromByteArray(byte[], long);
+    public static char[] loadChunkFromByteArray(byte[], int);
+    public static char[][] loadChunksFromPoolResource(java.lang.Class, java.lang.String);
+    public static char[] loadChunkFromPoolResource(java.lang.Class, java.lang.String, int);
+    public static char[] loadChunkFromLongArray(long[], int);
+    public static char[] inflateChunk(char[], int, int, com.androidacy.lsparanoid.PoolCipher, int);
+    public static java.lang.String decode(long, char[][]);
+    public static java.lang.String decode(long, char[][], com.androidacy.lsparanoid.KeystreamTable);
+    public static int length(long, char[][]);
+    public static int getChars(long, char[][], char[], int);
+    public static void appendTo(long, char[][], java.lang.Appendable);
+}
+
+# Keep decode cache counters so they can be read reflectively
+-keepclassmembers class com.androidacy.lsparanoid.Deobfuscator* {
+    public static long getCacheHitCount();
+    public static long getCacheMissCount();
+}
+
+# Keep the prewarm entry points so they can be called reflectively
+-keepclassmembers class com.androidacy.lsparanoid.Deobfuscator* {
+    public static java.util.concurrent.Future prewarm(java.util.concurrent.Executor);
+    public static java.util.concurrent.Future prewarm(int[]);
+}
+
+# Keep the trim entry point so it can be called reflectively from onTrimMemory
+-keepclassmembers class com.androidacy.lsparanoid.Deobfuscator* {
+    public static void trimMemory(int);
+}
+
+# Keep the allocation-free decode entry points so they can be called reflectively
+-keepclassmembers class com.androidacy.lsparanoid.Deobfuscator* {
+    public static int length(long);
+    public static int getChars(long, char[], int);
+    public static void appendTo(long, java.lang.Appendable);
+}
+
+# Keep InternTable used by generated code
+-keep,allowobfuscation class com.androidacy.lsparanoid.InternTable {
+    public <init>();
+    public java.lang.String get(long);
+    public java.lang.String intern(long, java.lang.String);
+}
+
+# Keep KeystreamTable used by generated code
+-keep,allowobfuscation class com.androidacy.lsparanoid.KeystreamTable {
+    public <init>(int, boolean, boolean);
+    public long getIndexMask();
+    public char[] getKeys();
+    public char[] extend(int);
+    public char[] decryptChunk(char[], int, int);
+}
+
+# Keep PoolCipher used by generated code for AES-CTR pools and compressed chunks
+-keep,allowobfuscation class com.androidacy.lsparanoid.PoolCipher {
+    public <init>(int);
+    public char[] decryptChunk(char[], int);
+}
+
+# Keep DecodeCache used by generated code
+-keep,allowobfuscation class com.androidacy.lsparanoid.DecodeCache {
+    public <init>(int);
+    public java.lang.String get(long);
+    public void put(long, java.lang.String);
+    public void clear();
+    public long getHitCount();
+    public long getMissCount();
 }
 
 # Keep RandomHelper used by DeobfuscatorHelper
 -keep,allowobfuscation class com.androidacy.lsparanoid.RandomHelper {
     public static long seed(long);
     public static long next(long);
+    public static long mix64(long);
 }
 
 # Keep Base64Decoder used by Chunk classes
 -keep,allowobfuscation class com.androidacy.lsparanoid.Base64Decoder {
     public static byte[] decode(java.lang.String);
+    public static int decodeToChars(java.lang.String, char[], int);
 }
@@ -0,0 +1,76 @@
+package com.androidacy.lsparanoid;
+
+import com.androidacy.lsparanoid.processor.model.DeobfuscatorOptions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of getString() against the allocation-free getChars() and appendTo() of a generated deobfuscator.
+ * With the gc profiler, gc.alloc.rate.norm should be about 0 bytes per operation for the allocation-free methods.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AllocationFreeBenchmark {
+    private static final String LITERAL = "A string of a typical UI label length";
+
+    private BenchmarkDeobfuscator deobfuscator;
+    private MethodHandle getStringHandle;
+    private MethodHandle getCharsHandle;
+    private MethodHandle appendToHandle;
+    private long id;
+    private char[] buffer;
+    private StringBuilder builder;
+
+    @Setup
+    public void setUp() throws Exception {
+        deobfuscator = BenchmarkDeobfuscator.generate(new DeobfuscatorOptions(), LITERAL);
+        getStringHandle = deobfuscator.findStatic("getString", MethodType.methodType(String.class, long.class));
+        getCharsHandle = deobfuscator.findStatic(
+            "getChars", MethodType.methodType(int.class, long.class, char[].class, int.class));
+        appendToHandle = deobfuscator.findStatic(
+            "appendTo", MethodType.methodType(void.class, long.class, Appendable.class));
+        id = deobfuscator.getId(0);
+        buffer = new char[LITERAL.length()];
+        builder = new StringBuilder(LITERAL.length());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        deobfuscator.close();
+    }
+
+    @Benchmark
+    public String getString() throws Throwable {
+        return (String) getStringHandle.invokeExact(id);
+    }
+
+    @Benchmark
+    public int getChars() throws Throwable {
+        return (int) getCharsHandle.invokeExact(id, buffer, 0);
+    }
+
+    @Benchmark
+    public int appendTo() throws Throwable {
+        builder.setLength(0);
+        appendToHandle.invokeExact(id, (Appendable) builder);
+        return builder.length();
+    }
+}
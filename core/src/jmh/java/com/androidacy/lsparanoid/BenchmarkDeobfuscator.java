@@ -0,0 +1,69 @@
+package com.androidacy.lsparanoid;
+
+import com.androidacy.lsparanoid.processor.model.DeobfuscatorOptions;
+import org.objectweb.asm.Opcodes;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * A deobfuscator generated by ParanoidProcessor for benchmarks.
+ * Generated methods are called through method handles, which pass primitives without boxing them.
+ */
+final class BenchmarkDeobfuscator implements AutoCloseable {
+    private static final String LITERALS_CLASS = "benchmark/Literals";
+    private static final String DEOBFUSCATOR_CLASS = "com/androidacy/lsparanoid/Deobfuscator$test";
+
+    private final Path workDir;
+    private final ProcessedClasses processed;
+    private final long[] ids;
+
+    private BenchmarkDeobfuscator(Path workDir, ProcessedClasses processed, long[] ids) {
+        this.workDir = workDir;
+        this.processed = processed;
+        this.ids = ids;
+    }
+
+    /**
+     * Generate a deobfuscator for the given strings.
+     *
+     * @param options the deobfuscator options
+     * @param strings the strings of the pool
+     */
+    static BenchmarkDeobfuscator generate(DeobfuscatorOptions options, String... strings) throws IOException {
+        Path workDir = Files.createTempDirectory("lsparanoid-jmh");
+        ProcessedClasses processed = ProcessedClasses.process(workDir, Map.of(
+            LITERALS_CLASS, ProcessedClasses.newLiteralClass(LITERALS_CLASS, Opcodes.V1_8, strings)
+        ), options);
+        return new BenchmarkDeobfuscator(workDir, processed, processed.getStringIds(LITERALS_CLASS, strings.length));
+    }
+
+    /**
+     * The ID of the string at the given index of the pool.
+     */
+    long getId(int index) {
+        return ids[index];
+    }
+
+    /**
+     * Find a public static method of the generated deobfuscator.
+     */
+    MethodHandle findStatic(String name, MethodType type) throws ReflectiveOperationException {
+        return MethodHandles.publicLookup().findStatic(processed.loadClass(DEOBFUSCATOR_CLASS), name, type);
+    }
+
+    @Override
+    public void close() throws IOException {
+        processed.close();
+        try (Stream<Path> files = Files.walk(workDir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+}
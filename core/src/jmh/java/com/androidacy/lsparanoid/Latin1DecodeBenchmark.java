@@ -0,0 +1,85 @@
+package com.androidacy.lsparanoid;
+
+import com.androidacy.lsparanoid.processor.model.DeobfuscatorOptions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the Latin-1 first getString() against building strings from a UTF-16 buffer.
+ * The UTF-16 path decodes with getChars() and calls new String(char[]), as getString() did before.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Latin1DecodeBenchmark {
+    private static final int STRING_COUNT = 64;
+
+    // ASCII: only ASCII strings, MIXED: every other string has a character past Latin-1
+    @Param({ "ASCII", "MIXED" })
+    private String pool;
+
+    private BenchmarkDeobfuscator deobfuscator;
+    private MethodHandle getStringHandle;
+    private MethodHandle getCharsHandle;
+    private long[] ids;
+    private char[] buffer;
+    private int next;
+
+    @Setup
+    public void setUp() throws Exception {
+        String[] strings = new String[STRING_COUNT];
+        for (int i = 0; i < strings.length; i++) {
+            boolean wide = pool.equals("MIXED") && i % 2 == 1;
+            strings[i] = "Label number " + i + (wide ? " with 中文 in it" : " of plain ASCII");
+        }
+        deobfuscator = BenchmarkDeobfuscator.generate(new DeobfuscatorOptions(), strings);
+        getStringHandle = deobfuscator.findStatic("getString", MethodType.methodType(String.class, long.class));
+        getCharsHandle = deobfuscator.findStatic(
+            "getChars", MethodType.methodType(int.class, long.class, char[].class, int.class));
+        ids = new long[strings.length];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = deobfuscator.getId(i);
+        }
+        buffer = new char[64];
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        deobfuscator.close();
+    }
+
+    @Benchmark
+    public String latin1() throws Throwable {
+        return (String) getStringHandle.invokeExact(nextId());
+    }
+
+    @Benchmark
+    public String utf16() throws Throwable {
+        int length = (int) getCharsHandle.invokeExact(nextId(), buffer, 0);
+        return new String(buffer, 0, length);
+    }
+
+    private long nextId() {
+        long id = ids[next];
+        next = (next + 1) % ids.length;
+        return id;
+    }
+}
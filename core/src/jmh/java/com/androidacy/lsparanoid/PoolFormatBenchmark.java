@@ -0,0 +1,78 @@
+package com.androidacy.lsparanoid;
+
+import com.androidacy.lsparanoid.processor.model.CacheMode;
+import com.androidacy.lsparanoid.processor.model.ChunkStorage;
+import com.androidacy.lsparanoid.processor.model.DeobfuscatorOptions;
+import com.androidacy.lsparanoid.processor.model.PoolFormat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of decoding strings of v1 and v2 pools with a generated deobfuscator.
+ * getChars() decodes into a reused buffer, so it measures the keystream without the cost of building a string.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PoolFormatBenchmark {
+    @Param({ "V1", "V2" })
+    private PoolFormat format;
+
+    @Param({ "16", "256" })
+    private int length;
+
+    private BenchmarkDeobfuscator deobfuscator;
+    private MethodHandle getStringHandle;
+    private MethodHandle getCharsHandle;
+    private long id;
+    private char[] buffer;
+
+    @Setup
+    public void setUp() throws Exception {
+        StringBuilder literal = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            literal.append((char) ('a' + i % 26));
+        }
+        DeobfuscatorOptions options = new DeobfuscatorOptions(
+            0, ChunkStorage.BASE64, CacheMode.NONE, false, false, false, format, false, false, false);
+        deobfuscator = BenchmarkDeobfuscator.generate(options, literal.toString());
+        getStringHandle = deobfuscator.findStatic("getString", MethodType.methodType(String.class, long.class));
+        getCharsHandle = deobfuscator.findStatic(
+            "getChars", MethodType.methodType(int.class, long.class, char[].class, int.class));
+        id = deobfuscator.getId(0);
+        buffer = new char[length];
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        deobfuscator.close();
+    }
+
+    @Benchmark
+    public String getString() throws Throwable {
+        return (String) getStringHandle.invokeExact(id);
+    }
+
+    @Benchmark
+    public int getChars() throws Throwable {
+        return (int) getCharsHandle.invokeExact(id, buffer, 0);
+    }
+}
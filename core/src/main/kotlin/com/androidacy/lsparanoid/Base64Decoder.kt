@@ -75,4 +75,63 @@ object Base64Decoder {
 
         return out
     }
+
+    /**
+     * Decode Base64 string of big-endian UTF-16 data straight into a char array.
+     *
+     * Whole groups of 8 Base64 characters are decoded into 3 chars at a time, and the check for
+     * characters outside of ASCII is done once after the loop. Like [decode], other invalid
+     * characters are not detected.
+     *
+     * @param input the Base64 string
+     * @param output the array to decode into
+     * @param offset the index in [output] of the first decoded char
+     * @return the number of decoded chars
+     */
+    @JvmStatic
+    fun decodeToChars(input: String, output: CharArray, offset: Int): Int {
+        val len = input.length
+        var padding = 0
+        if (len > 0 && input[len - 1] == '=') padding++
+        if (len > 1 && input[len - 2] == '=') padding++
+
+        val charCount = (((len * 3) / 4 - padding) / 2).coerceAtLeast(0)
+        require(offset >= 0 && charCount <= output.size - offset) {
+            "Output too small: $charCount chars at offset $offset, size ${output.size}"
+        }
+
+        val table = DECODE_TABLE
+        val groupCount = charCount / 3
+        var codes = 0
+        var inIndex = 0
+        var outIndex = offset
+        for (group in 0 until groupCount) {
+            var bits = 0L
+            for (i in 0 until 8) {
+                val code = input[inIndex + i].code
+                codes = codes or code
+                bits = (bits shl 6) or table[code and 0x7f].toLong()
+            }
+            output[outIndex] = (bits ushr 32).toInt().toChar()
+            output[outIndex + 1] = (bits ushr 16).toInt().toChar()
+            output[outIndex + 2] = bits.toInt().toChar()
+            inIndex += 8
+            outIndex += 3
+        }
+        require(codes < 128) { "Invalid Base64 character" }
+
+        // At most two chars are left, decode them through the byte path
+        if (outIndex < offset + charCount) {
+            val tail = decode(input.substring(inIndex))
+            var byteIndex = 0
+            while (outIndex < offset + charCount) {
+                val hi = tail[byteIndex].toInt() and 0xff
+                val lo = tail[byteIndex + 1].toInt() and 0xff
+                output[outIndex++] = ((hi shl 8) or lo).toChar()
+                byteIndex += 2
+            }
+        }
+
+        return charCount
+    }
 }
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2023 LSPosed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.androidacy.lsparanoid
+
+/**
+ * Source of decoded string pool chunks.
+ */
+interface ChunkLoader {
+    /**
+     * Load a chunk.
+     *
+     * @param index the chunk index
+     * @return the chunk characters
+     */
+    fun loadChunk(index: Int): CharArray
+}
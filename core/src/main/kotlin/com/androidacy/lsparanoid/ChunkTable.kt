@@ -0,0 +1,205 @@
+/*
+ * Copyright 2023 LSPosed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.androidacy.lsparanoid
+
+import java.lang.ref.SoftReference
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executor
+import java.util.concurrent.Future
+import java.util.concurrent.FutureTask
+import java.util.concurrent.atomic.AtomicReferenceArray
+
+/**
+ * Lazily loaded string pool chunks.
+ *
+ * Each slot is published with a compare-and-set, so a chunk is loaded at most once even when
+ * several threads ask for it at the same time. The thread that wins the slot calls the loader,
+ * the others wait for it. Reads of a loaded chunk take no lock.
+ *
+ * Loaded chunks can be dropped with [trim], or held through soft references so the garbage
+ * collector drops them under memory pressure. A dropped chunk is loaded again on its next access.
+ *
+ * @param chunkCount the number of chunks
+ * @param loader the loader called for chunks that are not loaded yet
+ * @param softReferences whether loaded chunks are held through soft references
+ */
+class ChunkTable @JvmOverloads constructor(
+    chunkCount: Int,
+    private val loader: ChunkLoader,
+    private val softReferences: Boolean = false
+) {
+    private val slots = AtomicReferenceArray<Any?>(chunkCount)
+
+    /**
+     * The number of chunks.
+     */
+    val size: Int
+        get() = slots.length()
+
+    /**
+     * Get chunk, loading it if needed.
+     *
+     * @param index the chunk index
+     * @return the chunk characters
+     */
+    fun get(index: Int): CharArray {
+        val slot = slots.get(index)
+        if (slot is CharArray) {
+            return slot
+        }
+        if (slot is SoftReference<*>) {
+            (slot.get() as CharArray?)?.let { return it }
+        }
+        return load(index, slot)
+    }
+
+    /**
+     * Drop loaded chunks in response to memory pressure.
+     *
+     * Takes the levels of `ComponentCallbacks2.onTrimMemory`. Levels below
+     * [TRIM_MEMORY_RUNNING_LOW] are ignored. Chunks that are being loaded are left alone.
+     *
+     * @param level the trim memory level
+     * @return whether chunks were dropped
+     */
+    fun trim(level: Int): Boolean {
+        if (level < TRIM_MEMORY_RUNNING_LOW) {
+            return false
+        }
+        for (index in 0 until size) {
+            val slot = slots.get(index)
+            if (slot is CharArray || slot is SoftReference<*>) {
+                slots.compareAndSet(index, slot, null)
+            }
+        }
+        return true
+    }
+
+    /**
+     * Load chunks in the background.
+     *
+     * Callers of [get] that race with the prewarm wait for its in-flight loads instead of loading
+     * the same chunks again.
+     *
+     * @param executor the executor to load chunks on
+     * @param indices the indices of the chunks to load, or null for all chunks
+     * @return a future that completes once the chunks are loaded
+     */
+    fun prewarm(executor: Executor, indices: IntArray?): Future<*> {
+        val task = FutureTask<Void?>({
+            if (indices == null) {
+                for (index in 0 until size) {
+                    get(index)
+                }
+            } else {
+                for (index in indices) {
+                    get(index)
+                }
+            }
+        }, null)
+        executor.execute(task)
+        return task
+    }
+
+    /**
+     * Load chunks on a new background thread.
+     *
+     * @param indices the indices of the chunks to load, or null for all chunks
+     * @return a future that completes once the chunks are loaded
+     */
+    fun prewarm(indices: IntArray?): Future<*> {
+        return prewarm(BACKGROUND_EXECUTOR, indices)
+    }
+
+    private fun load(index: Int, observed: Any?): CharArray {
+        var slot = observed
+        while (true) {
+            when (slot) {
+                is CharArray -> return slot
+                is CountDownLatch -> slot.awaitUninterruptibly()
+                is SoftReference<*> -> {
+                    (slot.get() as CharArray?)?.let { return it }
+                    // Cleared by the garbage collector, load it again
+                    val pending = CountDownLatch(1)
+                    if (slots.compareAndSet(index, slot, pending)) {
+                        return pending.complete(index)
+                    }
+                }
+                else -> {
+                    val pending = CountDownLatch(1)
+                    if (slots.compareAndSet(index, slot, pending)) {
+                        return pending.complete(index)
+                    }
+                }
+            }
+            slot = slots.get(index)
+        }
+    }
+
+    private fun CountDownLatch.complete(index: Int): CharArray {
+        try {
+            val chunk = loader.loadChunk(index)
+            slots.set(index, if (softReferences) SoftReference(chunk) else chunk)
+            return chunk
+        } catch (e: Throwable) {
+            // Let a later caller retry
+            slots.set(index, null)
+            throw e
+        } finally {
+            countDown()
+        }
+    }
+
+    private fun CountDownLatch.awaitUninterruptibly() {
+        var interrupted = false
+        while (true) {
+            try {
+                await()
+                break
+            } catch (e: InterruptedException) {
+                interrupted = true
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt()
+        }
+    }
+
+    companion object {
+        /**
+         * The lowest trim memory level that drops loaded chunks, matching
+         * `ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW`.
+         */
+        const val TRIM_MEMORY_RUNNING_LOW = 10
+
+        private val BACKGROUND_EXECUTOR = Executor { command ->
+            Thread(command, "lsparanoid-prewarm").apply {
+                isDaemon = true
+            }.start()
+        }
+
+        /**
+         * Get an already completed prewarm future, for deobfuscators without chunks.
+         */
+        @JvmStatic
+        fun completedPrewarm(): Future<*> {
+            return FutureTask<Void?>({}, null).apply {
+                run()
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2023 LSPosed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.androidacy.lsparanoid
+
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.LongAdder
+
+/**
+ * Bounded cache of decoded strings keyed by their obfuscated ID.
+ *
+ * Open-addressing table with primitive `long` keys. Reads never lock: entries are immutable and
+ * published through plain array stores. When a probe window is full, a victim is picked with
+ * clock (second-chance) eviction inside the window. Hit and miss counters are striped [LongAdder]s,
+ * so concurrent lookups don't contend on a shared counter.
+ *
+ * @param capacity the requested number of entries, rounded up to a power of two
+ */
+class DecodeCache(capacity: Int) {
+    private val entries: Array<Entry?>
+    private val mask: Int
+    private val hand = AtomicInteger()
+    private val hits = LongAdder()
+    private val misses = LongAdder()
+
+    init {
+        require(capacity > 0) { "Capacity must be positive: $capacity" }
+        var size = PROBE_LIMIT
+        while (size < capacity && size < MAX_CAPACITY) {
+            size = size shl 1
+        }
+        entries = arrayOfNulls(size)
+        mask = size - 1
+    }
+
+    /**
+     * The number of table slots.
+     */
+    val capacity: Int
+        get() = entries.size
+
+    /**
+     * The number of lookups that found a cached string.
+     */
+    val hitCount: Long
+        get() = hits.sum()
+
+    /**
+     * The number of lookups that did not find a cached string.
+     */
+    val missCount: Long
+        get() = misses.sum()
+
+    /**
+     * Get cached string.
+     *
+     * @param id the obfuscated string ID
+     * @return the cached string or null if it is not cached
+     */
+    fun get(id: Long): String? {
+        val entries = entries
+        var slot = indexFor(id)
+        for (i in 0 until PROBE_LIMIT) {
+            val entry = entries[slot] ?: break
+            if (entry.id == id) {
+                if (!entry.referenced) {
+                    entry.referenced = true
+                }
+                hits.increment()
+                return entry.value
+            }
+            slot = (slot + 1) and mask
+        }
+        misses.increment()
+        return null
+    }
+
+    /**
+     * Put decoded string into the cache, evicting an entry of the probe window if needed.
+     *
+     * @param id the obfuscated string ID
+     * @param value the decoded string
+     */
+    fun put(id: Long, value: String) {
+        val entries = entries
+        val start = indexFor(id)
+        var slot = start
+        for (i in 0 until PROBE_LIMIT) {
+            val entry = entries[slot]
+            if (entry == null || entry.id == id) {
+                entries[slot] = Entry(id, value)
+                return
+            }
+            slot = (slot + 1) and mask
+        }
+
+        // Sweep the window starting at the clock hand, giving referenced entries a second chance.
+        var offset = hand.getAndIncrement() and (PROBE_LIMIT - 1)
+        for (i in 0 until PROBE_LIMIT * 2) {
+            slot = (start + offset) and mask
+            val entry = entries[slot]
+            if (entry == null || !entry.referenced) {
+                break
+            }
+            entry.referenced = false
+            offset = (offset + 1) and (PROBE_LIMIT - 1)
+        }
+        entries[slot] = Entry(id, value)
+    }
+
+    /**
+     * Remove all cached strings. Hit and miss counters are preserved.
+     */
+    fun clear() {
+        entries.fill(null)
+    }
+
+    private fun indexFor(id: Long): Int {
+        return ((id * -0x61c8864680b583ebL) ushr 32).toInt() and mask
+    }
+
+    private class Entry(val id: Long, val value: String) {
+        @JvmField
+        var referenced = false
+    }
+
+    companion object {
+        /**
+         * Maximum number of slots probed for a single ID.
+         */
+        const val PROBE_LIMIT = 8
+
+        private const val MAX_CAPACITY = 1 shl 20
+    }
+}
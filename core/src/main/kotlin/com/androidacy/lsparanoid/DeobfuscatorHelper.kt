@@ -17,9 +17,17 @@
 
 package com.androidacy.lsparanoid
 
-import java.io.ByteArrayInputStream
 import java.io.DataInputStream
+import java.io.EOFException
+import java.io.File
+import java.io.IOException
 import java.io.InputStream
+import java.io.RandomAccessFile
+import java.nio.Buffer
+import java.nio.ByteBuffer
+import java.nio.CharBuffer
+import java.nio.channels.FileChannel
+import java.util.zip.Inflater
 
 /**
  * Helper for deobfuscating strings.
@@ -30,6 +38,16 @@ object DeobfuscatorHelper {
      */
     const val MAX_CHUNK_LENGTH = 0x1fff
 
+    /**
+     * Magic number at the start of a string pool resource.
+     */
+    const val POOL_MAGIC = 0x4c535050
+
+    /**
+     * Size in bytes of the fixed part of a string pool header: the magic number and the chunk count.
+     */
+    const val POOL_HEADER_SIZE = 8
+
     /**
      * Load chunks from resource.
      *
@@ -43,15 +61,169 @@ object DeobfuscatorHelper {
         return try {
             clazz.getResourceAsStream(resourceName).use { inputStream ->
                 requireNotNull(inputStream) { "Resource not found: $resourceName" }
+                require(totalLength <= Int.MAX_VALUE / 2) { "Invalid total length: $totalLength" }
+                // Read the whole pool in one block instead of a char at a time
+                val data = ByteArray(maxOf(totalLength, 0L).toInt() * 2)
                 DataInputStream(inputStream).use { dis ->
-                    loadChunksFromStream(dis, totalLength)
+                    dis.readFully(data)
                 }
+                loadChunksFromBuffer(ByteBuffer.wrap(data).asCharBuffer(), totalLength)
             }
         } catch (e: Exception) {
             throw RuntimeException("Failed to load obfuscated strings", e)
         }
     }
 
+    /**
+     * Load all chunks of a string pool resource.
+     *
+     * The pool is read with a single bulk read, or memory-mapped when the resource is a plain file.
+     * Its layout is described in [loadChunksFromPool].
+     *
+     * @param clazz the class to load resource from
+     * @param resourceName the resource name
+     * @return the chunk characters
+     */
+    @JvmStatic
+    fun loadChunksFromPoolResource(clazz: Class<*>, resourceName: String): Array<CharArray?> {
+        return try {
+            loadChunksFromPool(openPoolResource(clazz, resourceName))
+        } catch (e: Exception) {
+            throw RuntimeException("Failed to load obfuscated strings", e)
+        }
+    }
+
+    /**
+     * Load a single chunk of a string pool resource.
+     *
+     * Used to load a chunk again after it was dropped. Only the header up to the chunk offsets
+     * and the chunk itself are read, the rest of the pool is skipped.
+     *
+     * @param clazz the class to load resource from
+     * @param resourceName the resource name
+     * @param index the chunk index
+     * @return the chunk characters
+     */
+    @JvmStatic
+    fun loadChunkFromPoolResource(clazz: Class<*>, resourceName: String, index: Int): CharArray {
+        return try {
+            clazz.getResourceAsStream(resourceName).use { inputStream ->
+                requireNotNull(inputStream) { "Resource not found: $resourceName" }
+                readPoolChunk(DataInputStream(inputStream), index)
+            }
+        } catch (e: Exception) {
+            throw RuntimeException("Failed to load obfuscated strings", e)
+        }
+    }
+
+    private fun readPoolChunk(dis: DataInputStream, index: Int): CharArray {
+        if (dis.readInt() != POOL_MAGIC) {
+            throw IOException("Invalid string pool header")
+        }
+        val chunkCount = dis.readInt()
+        if (index < 0 || index >= chunkCount) {
+            throw IllegalArgumentException("Chunk index out of bounds: $index")
+        }
+        skipFully(dis, index * 4L)
+        val start = dis.readInt()
+        val end = dis.readInt()
+        val position = POOL_HEADER_SIZE + (index + 2) * 4L
+        if (start < position || end < start) {
+            throw IOException("Invalid string pool offsets: $start, $end")
+        }
+        skipFully(dis, start - position)
+        val data = ByteArray(end - start)
+        dis.readFully(data)
+        return loadChunkFromByteArray(data, data.size / 2)
+    }
+
+    private fun skipFully(inputStream: InputStream, count: Long) {
+        var remaining = count
+        while (remaining > 0) {
+            val skipped = inputStream.skip(remaining)
+            if (skipped <= 0) {
+                // skip() may stop early without reaching the end, read a byte to tell
+                if (inputStream.read() < 0) {
+                    throw EOFException("Pool ends before the chunk")
+                }
+                remaining--
+            } else {
+                remaining -= skipped
+            }
+        }
+    }
+
+    private fun openPoolResource(clazz: Class<*>, resourceName: String): ByteBuffer {
+        val url = requireNotNull(clazz.getResource(resourceName)) { "Resource not found: $resourceName" }
+        return if (url.protocol == "file") {
+            RandomAccessFile(File(url.toURI()), "r").use { file ->
+                file.channel.map(FileChannel.MapMode.READ_ONLY, 0, file.length())
+            }
+        } else {
+            url.openStream().use { readPool(it) }
+        }
+    }
+
+    /**
+     * Load all chunks of a string pool.
+     *
+     * The pool starts with a big-endian header: [POOL_MAGIC], the chunk count `n` and `n + 1` byte
+     * offsets from the start of the pool, the last one being the pool size. Chunk `i` is stored as
+     * big-endian characters between offsets `i` and `i + 1`.
+     *
+     * @param pool the pool contents, starting at position 0
+     * @return the chunk characters
+     */
+    @JvmStatic
+    fun loadChunksFromPool(pool: ByteBuffer): Array<CharArray?> {
+        val chunkCount = checkPoolHeader(pool)
+        return Array(chunkCount) { i -> loadChunkFromPool(pool, i) }
+    }
+
+    private fun checkPoolHeader(pool: ByteBuffer): Int {
+        if (pool.getInt(0) != POOL_MAGIC) {
+            throw IOException("Invalid string pool header")
+        }
+        return pool.getInt(4)
+    }
+
+    private fun loadChunkFromPool(pool: ByteBuffer, index: Int): CharArray {
+        if (index < 0 || index >= pool.getInt(4)) {
+            throw IllegalArgumentException("Chunk index out of bounds: $index")
+        }
+        val start = pool.getInt(POOL_HEADER_SIZE + index * 4)
+        val end = pool.getInt(POOL_HEADER_SIZE + (index + 1) * 4)
+        val chunk = CharArray((end - start) / 2)
+        val view = pool.duplicate()
+        // Call through Buffer so the bytecode also links on runtimes without the covariant override
+        (view as Buffer).position(start)
+        view.asCharBuffer().get(chunk)
+        return chunk
+    }
+
+    private fun readPool(inputStream: InputStream): ByteBuffer {
+        val dis = DataInputStream(inputStream)
+        val header = ByteArray(POOL_HEADER_SIZE)
+        dis.readFully(header)
+        val chunkCount = ByteBuffer.wrap(header).getInt(4)
+        if (chunkCount < 0) {
+            throw IOException("Invalid string pool header")
+        }
+        val offsets = ByteArray((chunkCount + 1) * 4)
+        dis.readFully(offsets)
+        val size = ByteBuffer.wrap(offsets).getInt(chunkCount * 4)
+        val headerSize = header.size + offsets.size
+        if (size < headerSize) {
+            throw IOException("Invalid string pool size: $size")
+        }
+
+        val data = ByteArray(size)
+        header.copyInto(data)
+        offsets.copyInto(data, header.size)
+        dis.readFully(data, headerSize, size - headerSize)
+        return ByteBuffer.wrap(data)
+    }
+
     /**
      * Load chunks from byte array.
      *
@@ -62,15 +234,101 @@ object DeobfuscatorHelper {
     @JvmStatic
     fun loadChunksFromByteArray(data: ByteArray, totalLength: Long): Array<String> {
         return try {
-            DataInputStream(ByteArrayInputStream(data)).use { dis ->
-                loadChunksFromStream(dis, totalLength)
+            loadChunksFromBuffer(ByteBuffer.wrap(data).asCharBuffer(), totalLength)
+        } catch (e: Exception) {
+            throw RuntimeException("Failed to load obfuscated strings", e)
+        }
+    }
+
+    /**
+     * Load a single chunk from byte array as characters.
+     *
+     * @param data the byte array containing big-endian encoded characters
+     * @param length the chunk length in characters
+     * @return the chunk characters
+     */
+    @JvmStatic
+    fun loadChunkFromByteArray(data: ByteArray, length: Int): CharArray {
+        if (length < 0 || data.size < length * 2L) {
+            throw RuntimeException(
+                "Failed to load obfuscated strings",
+                EOFException("Chunk needs ${length * 2L} bytes, got ${data.size}")
+            )
+        }
+
+        val chunk = CharArray(length)
+        ByteBuffer.wrap(data).asCharBuffer().get(chunk)
+        return chunk
+    }
+
+    /**
+     * Load a single chunk from the array initializer of a chunk class.
+     *
+     * @param data the chunk characters, four per element, the first one in the high bits
+     * @param length the chunk length in characters
+     * @return the chunk characters
+     */
+    @JvmStatic
+    fun loadChunkFromLongArray(data: LongArray, length: Int): CharArray {
+        if (length < 0 || data.size < (length + 3L) / 4) {
+            throw RuntimeException(
+                "Failed to load obfuscated strings",
+                EOFException("Chunk needs ${(length + 3L) / 4} words, got ${data.size}")
+            )
+        }
+
+        val chunk = CharArray(length)
+        for (i in 0 until length) {
+            chunk[i] = (data[i shr 2] ushr ((3 - (i and 3)) shl 4)).toInt().toChar()
+        }
+        return chunk
+    }
+
+    /**
+     * Inflate a compressed chunk.
+     *
+     * A compressed chunk holds its plaintext characters, big-endian, deflated and then encrypted
+     * with the AES-CTR pool cipher, since encrypted data does not compress. The sealed stream is
+     * embedded two bytes per character, padded with a zero byte to an even length.
+     *
+     * @param data the sealed deflate stream
+     * @param byteLength the length of the deflate stream in bytes
+     * @param length the chunk length in characters
+     * @param cipher the pool cipher
+     * @param chunkIndex the chunk index
+     * @return the plaintext chunk characters
+     */
+    @JvmStatic
+    fun inflateChunk(data: CharArray, byteLength: Int, length: Int, cipher: PoolCipher, chunkIndex: Int): CharArray {
+        val compressed = ByteBuffer.allocate(data.size * 2)
+        compressed.asCharBuffer().put(data)
+        cipher.crypt(compressed.array(), 0, byteLength, chunkIndex)
+
+        val plaintext = ByteArray(length * 2)
+        val inflater = Inflater()
+        try {
+            inflater.setInput(compressed.array(), 0, byteLength)
+            var inflated = 0
+            while (inflated < plaintext.size) {
+                val count = inflater.inflate(plaintext, inflated, plaintext.size - inflated)
+                if (count == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    throw EOFException("Chunk $chunkIndex inflated to $inflated of ${plaintext.size} bytes")
+                }
+                inflated += count
             }
         } catch (e: Exception) {
             throw RuntimeException("Failed to load obfuscated strings", e)
+        } finally {
+            inflater.end()
         }
+        return loadChunkFromByteArray(plaintext, length)
     }
 
-    private fun loadChunksFromStream(dis: DataInputStream, totalLength: Long): Array<String> {
+    private fun loadChunksFromBuffer(chars: CharBuffer, totalLength: Long): Array<String> {
+        if (totalLength > chars.remaining()) {
+            throw EOFException("Pool needs $totalLength chars, got ${chars.remaining()}")
+        }
+
         val chunkCount = ((totalLength + MAX_CHUNK_LENGTH - 1) / MAX_CHUNK_LENGTH).toInt()
         val chunks = Array(chunkCount) { "" }
 
@@ -79,7 +337,8 @@ object DeobfuscatorHelper {
 
         while (charsRead < totalLength) {
             val chunkSize = minOf(MAX_CHUNK_LENGTH.toLong(), totalLength - charsRead).toInt()
-            val buffer = CharArray(chunkSize) { dis.readChar() }
+            val buffer = CharArray(chunkSize)
+            chars.get(buffer)
             chunks[chunkIndex++] = String(buffer)
             charsRead += chunkSize
         }
@@ -96,12 +355,8 @@ object DeobfuscatorHelper {
      */
     @JvmStatic
     fun getString(id: Long, chunks: Array<String?>): String {
-        var state = RandomHelper.seed(id and 0xffffffffL)
-        state = RandomHelper.next(state)
-        val low = (state ushr 32) and 0xffff
-        state = RandomHelper.next(state)
-        val high = (state ushr 16) and 0xffff0000
-        val index = ((id ushr 32) xor low xor high).toInt()
+        var state = getStartState(id)
+        val index = (state ushr 32).toInt()
 
         state = getCharAt(index, chunks, state, null)
         val length = ((state ushr 32) and 0xffffL).toInt()
@@ -118,30 +373,263 @@ object DeobfuscatorHelper {
      *
      * @param id the obfuscated string ID
      * @param chunks the chunks array (chunks loaded on-demand)
-     * @param deobfuscatorClass the deobfuscator class for loading chunks via reflection
+     * @param chunkLoader the loader of missing chunks
+     * @return the deobfuscated string
+     */
+    @JvmStatic
+    fun getString(id: Long, chunks: Array<String?>, chunkLoader: ChunkLoader?): String {
+        var state = getStartState(id)
+        val index = (state ushr 32).toInt()
+
+        state = getCharAt(index, chunks, state, chunkLoader)
+        val length = ((state ushr 32) and 0xffffL).toInt()
+        val chars = CharArray(length) { i ->
+            state = getCharAt(index + i + 1, chunks, state, chunkLoader)
+            ((state ushr 32) and 0xffffL).toInt().toChar()
+        }
+
+        return String(chars)
+    }
+
+    /**
+     * Get deobfuscated string with preloaded chunks.
+     *
+     * Kept for classes processed by earlier versions. Deobfuscator classes no longer register a
+     * loader for their class, so every chunk the string spans must be loaded already.
+     *
+     * @param id the obfuscated string ID
+     * @param chunks the chunks array
+     * @param deobfuscatorClass ignored
      * @return the deobfuscated string
      */
+    @Deprecated(
+        "Pass the ChunkLoader of the chunks instead",
+        ReplaceWith("getString(id, chunks, null as ChunkLoader?)")
+    )
     @JvmStatic
+    @Suppress("UNUSED_PARAMETER")
     fun getString(id: Long, chunks: Array<String?>, deobfuscatorClass: Class<*>?): String {
-        var state = RandomHelper.seed(id and 0xffffffffL)
-        state = RandomHelper.next(state)
-        val low = (state ushr 32) and 0xffff
-        state = RandomHelper.next(state)
-        val high = (state ushr 16) and 0xffff0000
-        val index = ((id ushr 32) xor low xor high).toInt()
+        return getString(id, chunks, null as ChunkLoader?)
+    }
 
-        state = getCharAt(index, chunks, state, deobfuscatorClass)
+    /**
+     * Get deobfuscated string from character chunks.
+     *
+     * Not an overload of [getString] so that `getString(id, null)` stays unambiguous for Java callers.
+     *
+     * @param id the obfuscated string ID
+     * @param chunks the character chunks array (all chunks must be pre-loaded)
+     * @return the deobfuscated string
+     */
+    @JvmStatic
+    fun decode(id: Long, chunks: Array<CharArray?>): String {
+        var state = getStartState(id)
+        val index = (state ushr 32).toInt()
+
+        state = getCharAt(index, chunks, state)
         val length = ((state ushr 32) and 0xffffL).toInt()
         val chars = CharArray(length) { i ->
-            state = getCharAt(index + i + 1, chunks, state, deobfuscatorClass)
+            state = getCharAt(index + i + 1, chunks, state)
             ((state ushr 32) and 0xffffL).toInt().toChar()
         }
 
         return String(chars)
     }
 
+    /**
+     * Get deobfuscated string from character chunks of a v2 pool.
+     *
+     * String IDs are derived like in v1 pools. The units of a string, its length first, are
+     * masked four at a time with the 64-bit words of [RandomHelper.mix64].
+     *
+     * @param id the obfuscated string ID
+     * @param chunks the character chunks array (all chunks must be pre-loaded)
+     * @return the deobfuscated string
+     */
+    @JvmStatic
+    fun decodeV2(id: Long, chunks: Array<CharArray?>): String {
+        var counter = RandomHelper.seed(id and 0xffffffffL)
+        val index = (getStartState(id, counter) ushr 32).toInt()
+
+        counter += RandomHelper.KEYSTREAM_GAMMA
+        var word = RandomHelper.mix64(counter)
+        val length = (word.toInt() xor getUnitAt(index, chunks)) and 0xffff
+        val chars = CharArray(length)
+        var i = 0
+        while (i < length) {
+            // Units 4k - 1 to 4k + 2 of the string share word k, as the length is unit 0
+            val lane = (i + 1) and 3
+            if (lane == 0) {
+                counter += RandomHelper.KEYSTREAM_GAMMA
+                word = RandomHelper.mix64(counter)
+            }
+            chars[i] = ((word ushr (lane shl 4)).toInt() xor getUnitAt(index + i + 1, chunks)).toChar()
+            i++
+        }
+
+        return String(chars)
+    }
+
+    /**
+     * Get deobfuscated string from character chunks with a precomputed keystream.
+     *
+     * Handles v1 and v2 pools, with or without packed Latin-1 strings, as configured in
+     * [keystream]. A packed Latin-1 string has the low bit of its length unit set and stores two
+     * characters per unit, the first one in the high byte.
+     *
+     * @param id the obfuscated string ID
+     * @param chunks the character chunks array (all chunks must be pre-loaded)
+     * @param keystream the keystream of the pool
+     * @return the deobfuscated string
+     */
+    @JvmStatic
+    fun decode(id: Long, chunks: Array<CharArray?>, keystream: KeystreamTable): String {
+        val index = ((id ushr 32) xor keystream.indexMask).toInt()
+        var keys = keystream.keys
+        val header = keys[0].code xor getUnitAt(index, chunks)
+        keys = keystream.extend(keystream.getUnitCount(header))
+
+        if (!keystream.packedLatin1 || header and 1 == 0) {
+            val length = if (keystream.packedLatin1) header ushr 1 else header
+            val chars = CharArray(length) { i -> (keys[i + 1].code xor getUnitAt(index + i + 1, chunks)).toChar() }
+            return String(chars)
+        }
+
+        val length = header ushr 1
+        val bytes = ByteArray(length)
+        for (i in 0 until length) {
+            val unit = i / 2 + 1
+            val value = keys[unit].code xor getUnitAt(index + unit, chunks)
+            bytes[i] = (if (i and 1 == 0) value ushr 8 else value).toByte()
+        }
+        return String(bytes, Charsets.ISO_8859_1)
+    }
+
+    @JvmStatic
+    private fun getUnitAt(charIndex: Int, chunks: Array<CharArray?>): Int {
+        val chunkIndex = charIndex / MAX_CHUNK_LENGTH
+
+        if (chunkIndex < 0 || chunkIndex >= chunks.size) {
+            throw IllegalArgumentException("Chunk index out of bounds: $chunkIndex")
+        }
+
+        val chunk = chunks[chunkIndex] ?: throw IllegalStateException("Chunk is null at index: $chunkIndex")
+        val indexInChunk = charIndex - (chunkIndex * MAX_CHUNK_LENGTH)
+
+        if (indexInChunk < 0 || indexInChunk >= chunk.size) {
+            throw IllegalArgumentException("Index in chunk out of bounds: $indexInChunk, chunk length: ${chunk.size}")
+        }
+
+        return chunk[indexInChunk].code
+    }
+
+    /**
+     * Get the length of a deobfuscated string from character chunks without decoding it.
+     *
+     * @param id the obfuscated string ID
+     * @param chunks the character chunks array (all chunks must be pre-loaded)
+     * @return the string length
+     */
+    @JvmStatic
+    fun length(id: Long, chunks: Array<CharArray?>): Int {
+        var state = getStartState(id)
+        val index = (state ushr 32).toInt()
+
+        state = getCharAt(index, chunks, state)
+        return ((state ushr 32) and 0xffffL).toInt()
+    }
+
+    /**
+     * Deobfuscate a string from character chunks into a caller-supplied buffer.
+     *
+     * Nothing is allocated, and nothing is written if the string doesn't fit.
+     *
+     * @param id the obfuscated string ID
+     * @param chunks the character chunks array (all chunks must be pre-loaded)
+     * @param dst the destination buffer
+     * @param off the offset in [dst] to write the first character to
+     * @return the number of characters written
+     */
+    @JvmStatic
+    fun getChars(id: Long, chunks: Array<CharArray?>, dst: CharArray, off: Int): Int {
+        var state = getStartState(id)
+        val index = (state ushr 32).toInt()
+
+        state = getCharAt(index, chunks, state)
+        val length = ((state ushr 32) and 0xffffL).toInt()
+        if (off < 0 || off > dst.size - length) {
+            throw IndexOutOfBoundsException("Cannot write $length chars at $off, buffer length: ${dst.size}")
+        }
+
+        for (i in 0 until length) {
+            state = getCharAt(index + i + 1, chunks, state)
+            dst[off + i] = ((state ushr 32) and 0xffffL).toInt().toChar()
+        }
+        return length
+    }
+
+    /**
+     * Deobfuscate a string from character chunks and append it character by character.
+     *
+     * @param id the obfuscated string ID
+     * @param chunks the character chunks array (all chunks must be pre-loaded)
+     * @param appendable the destination
+     */
+    @JvmStatic
+    @Throws(IOException::class)
+    fun appendTo(id: Long, chunks: Array<CharArray?>, appendable: Appendable) {
+        var state = getStartState(id)
+        val index = (state ushr 32).toInt()
+
+        state = getCharAt(index, chunks, state)
+        val length = ((state ushr 32) and 0xffffL).toInt()
+        for (i in 0 until length) {
+            state = getCharAt(index + i + 1, chunks, state)
+            appendable.append(((state ushr 32) and 0xffffL).toInt().toChar())
+        }
+    }
+
+    /**
+     * Derive the pool index of a string and the state its length unit is decoded with.
+     *
+     * [RandomHelper.next] only reads the low 32 bits of a state, so the returned value can be
+     * used as the state as is.
+     *
+     * @param id the obfuscated string ID
+     * @param seed the seed of the ID
+     * @return the pool index in the high 32 bits and the state in the low 32 bits
+     */
+    @Suppress("NOTHING_TO_INLINE")
+    private inline fun getStartState(id: Long, seed: Long = RandomHelper.seed(id and 0xffffffffL)): Long {
+        var state = RandomHelper.next(seed)
+        val low = (state ushr 32) and 0xffff
+        state = RandomHelper.next(state)
+        val high = (state ushr 16) and 0xffff0000
+        val index = (id ushr 32) xor low xor high
+        return (index shl 32) or (state and 0xffffffffL)
+    }
+
+    @JvmStatic
+    private fun getCharAt(charIndex: Int, chunks: Array<CharArray?>, state: Long): Long {
+        val nextState = RandomHelper.next(state)
+        val chunkIndex = charIndex / MAX_CHUNK_LENGTH
+
+        if (chunkIndex < 0 || chunkIndex >= chunks.size) {
+            throw IllegalArgumentException("Chunk index out of bounds: $chunkIndex")
+        }
+
+        val chunk = chunks[chunkIndex] ?: throw IllegalStateException("Chunk is null at index: $chunkIndex")
+        val indexInChunk = charIndex - (chunkIndex * MAX_CHUNK_LENGTH)
+
+        if (indexInChunk < 0 || indexInChunk >= chunk.size) {
+            throw IllegalArgumentException("Index in chunk out of bounds: $indexInChunk, chunk length: ${chunk.size}")
+        }
+
+        return nextState xor (chunk[indexInChunk].code.toLong() shl 32)
+    }
+
     @JvmStatic
-    private fun getCharAt(charIndex: Int, chunks: Array<String?>, state: Long, deobfuscatorClass: Class<*>?): Long {
+    private fun getCharAt(charIndex: Int, chunks: Array<String?>, state: Long, chunkLoader: ChunkLoader?): Long {
         val nextState = RandomHelper.next(state)
         val chunkIndex = charIndex / MAX_CHUNK_LENGTH
 
@@ -152,11 +640,9 @@ object DeobfuscatorHelper {
         // Load chunk on-demand if needed
         var chunk = chunks[chunkIndex]
         if (chunk == null) {
-            if (deobfuscatorClass != null) {
-                // Use reflection to call ensureChunkLoaded(int) on the deobfuscator class
+            if (chunkLoader != null) {
                 try {
-                    val method = deobfuscatorClass.getMethod("ensureChunkLoaded", Int::class.javaPrimitiveType)
-                    chunk = method.invoke(null, chunkIndex) as String
+                    chunk = String(chunkLoader.loadChunk(chunkIndex))
                     chunks[chunkIndex] = chunk
                 } catch (e: Exception) {
                     throw RuntimeException("Failed to load chunk $chunkIndex", e)
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2023 LSPosed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.androidacy.lsparanoid
+
+import java.lang.ref.ReferenceQueue
+import java.lang.ref.WeakReference
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Canonical decoded strings keyed by their obfuscated ID.
+ *
+ * Values are held through weak references, so a string stays canonical for as long as something
+ * else references it and can be collected afterwards. Entries of collected strings are removed
+ * on the next [intern] call.
+ */
+class InternTable {
+    private val entries = ConcurrentHashMap<Long, Entry>()
+    private val queue = ReferenceQueue<String>()
+
+    /**
+     * The number of entries, including ones whose string was collected but not removed yet.
+     */
+    val size: Int
+        get() = entries.size
+
+    /**
+     * Get canonical string.
+     *
+     * @param id the obfuscated string ID
+     * @return the canonical string or null if there is none
+     */
+    fun get(id: Long): String? {
+        return entries[id]?.get()
+    }
+
+    /**
+     * Make a decoded string canonical unless another thread did it first.
+     *
+     * @param id the obfuscated string ID
+     * @param value the decoded string
+     * @return the canonical string, which is [value] unless another instance is still reachable
+     */
+    fun intern(id: Long, value: String): String {
+        expungeCollectedEntries()
+        while (true) {
+            val entry = entries[id]
+            if (entry == null) {
+                if (entries.putIfAbsent(id, Entry(id, value, queue)) == null) {
+                    return value
+                }
+                continue
+            }
+
+            val canonical = entry.get()
+            if (canonical != null) {
+                return canonical
+            }
+            if (entries.replace(id, entry, Entry(id, value, queue))) {
+                return value
+            }
+        }
+    }
+
+    private fun expungeCollectedEntries() {
+        while (true) {
+            val entry = queue.poll() as Entry? ?: return
+            entries.remove(entry.id, entry)
+        }
+    }
+
+    private class Entry(val id: Long, value: String, queue: ReferenceQueue<String>) :
+        WeakReference<String>(value, queue)
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2023 LSPosed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.androidacy.lsparanoid
+
+/**
+ * Keystream shared by all strings of a pool.
+ *
+ * Every string ID carries the same seed in its low 32 bits, so the index mask and the key of
+ * each unit only depend on the seed and the position of the unit in its string. The table
+ * derives the mask once and computes keys on demand, growing to the longest string decoded so
+ * far. Unit `j` of a string, its length being unit 0, is masked with `keys[j]`.
+ *
+ * Reads of the keys take no lock. Growing replaces the array, so a previously returned array
+ * stays valid.
+ *
+ * @param seed the seed in the low 32 bits of the string IDs
+ * @param wordKeystream whether the pool uses the 64-bit word keystream of the v2 format
+ * @param packedLatin1 whether the length unit of each string carries a Latin-1 flag in its low
+ * bit, with Latin-1 strings stored two characters per unit
+ */
+class KeystreamTable @JvmOverloads constructor(
+    seed: Int,
+    private val wordKeystream: Boolean = false,
+    val packedLatin1: Boolean = false
+) {
+    private val start: Long
+
+    /**
+     * The mask of the pool position in the high 32 bits of the string IDs.
+     */
+    val indexMask: Long
+
+    /**
+     * The keys computed so far, at least one.
+     */
+    @Volatile
+    var keys: CharArray
+        private set
+
+    init {
+        val seeded = RandomHelper.seed(seed.toLong() and 0xffffffffL)
+        var state = RandomHelper.next(seeded)
+        val low = (state ushr 32) and 0xffff
+        state = RandomHelper.next(state)
+        val high = (state ushr 16) and 0xffff0000
+        indexMask = low xor high
+        // v1 keys continue the state after the mask, v2 keys count up from the seeded state
+        start = if (wordKeystream) seeded else state
+        keys = computeKeys(INITIAL_LENGTH)
+    }
+
+    /**
+     * Get keys covering the given number of units, growing the table if needed.
+     *
+     * @param length the number of units, the length unit included
+     * @return the keys, at least [length] of them
+     */
+    fun extend(length: Int): CharArray {
+        val keys = keys
+        if (keys.size >= length) {
+            return keys
+        }
+        return grow(length)
+    }
+
+    /**
+     * Decrypt a chunk in place, so strings can be read from it without keys.
+     *
+     * Length units are decrypted too, so the layout of the chunk stays the same.
+     *
+     * @param chunk the encrypted chunk characters
+     * @param phase the unit index within its string of the first unit of the chunk, 0 when a
+     * string starts there
+     * @param remaining the number of units of that string from the chunk start on, ignored when
+     * [phase] is 0
+     * @return [chunk]
+     */
+    fun decryptChunk(chunk: CharArray, phase: Int, remaining: Int): CharArray {
+        var unit = phase
+        var end = phase + remaining
+        var keys = extend(maxOf(end, 1))
+        for (i in chunk.indices) {
+            if (unit == 0) {
+                val header = keys[0].code xor chunk[i].code
+                chunk[i] = header.toChar()
+                end = getUnitCount(header)
+                keys = extend(end)
+            } else {
+                chunk[i] = (keys[unit].code xor chunk[i].code).toChar()
+            }
+            if (++unit == end) {
+                unit = 0
+            }
+        }
+        return chunk
+    }
+
+    /**
+     * Get the number of units a string occupies in the pool.
+     *
+     * @param header the decrypted length unit of the string
+     * @return the number of units, the length unit included
+     */
+    fun getUnitCount(header: Int): Int {
+        if (!packedLatin1) {
+            return header + 1
+        }
+        val length = header ushr 1
+        return if (header and 1 != 0) (length + 1) / 2 + 1 else length + 1
+    }
+
+    @Synchronized
+    private fun grow(length: Int): CharArray {
+        val keys = keys
+        if (keys.size >= length) {
+            return keys
+        }
+        require(length <= MAX_LENGTH) { "Key count $length exceeds maximum of $MAX_LENGTH" }
+        val grown = computeKeys(minOf(maxOf(length, keys.size shl 1), MAX_LENGTH))
+        this.keys = grown
+        return grown
+    }
+
+    private fun computeKeys(length: Int): CharArray {
+        val keys = CharArray(length)
+        if (wordKeystream) {
+            var counter = start
+            var word = 0L
+            for (unit in 0 until length) {
+                if (unit and 3 == 0) {
+                    counter += RandomHelper.KEYSTREAM_GAMMA
+                    word = RandomHelper.mix64(counter)
+                }
+                keys[unit] = (word ushr ((unit and 3) shl 4)).toInt().toChar()
+            }
+        } else {
+            var state = start
+            for (unit in 0 until length) {
+                state = RandomHelper.next(state)
+                keys[unit] = (state ushr 32).toInt().toChar()
+            }
+        }
+        return keys
+    }
+
+    companion object {
+        private const val INITIAL_LENGTH = 64
+
+        /**
+         * The number of units of the longest possible string, its length unit included.
+         */
+        const val MAX_LENGTH = 0x10000
+    }
+}
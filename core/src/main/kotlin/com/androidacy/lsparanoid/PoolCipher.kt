@@ -0,0 +1,92 @@
+/*
+ * Copyright 2023 LSPosed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.androidacy.lsparanoid
+
+import java.nio.ByteBuffer
+import java.security.GeneralSecurityException
+import javax.crypto.Cipher
+import javax.crypto.spec.IvParameterSpec
+import javax.crypto.spec.SecretKeySpec
+
+/**
+ * AES-CTR cipher of AES_CTR string pools.
+ *
+ * Each chunk is encrypted on its own, with the chunk index in the counter block, so a chunk is
+ * decrypted with a single `doFinal` call and uses the AES instructions of the CPU where the
+ * provider supports them. The 128-bit key and the nonce are derived from the seed of the build
+ * with [RandomHelper.mix64].
+ *
+ * This only obfuscates the pool. The seed is 32 bits and sits in the low half of every string ID,
+ * so the key is as easy to recover as the keystream of the other pool formats.
+ *
+ * @param seed the seed in the low 32 bits of the string IDs
+ */
+class PoolCipher(seed: Int) {
+    private val key: SecretKeySpec
+    private val nonce: Long
+
+    init {
+        var counter = RandomHelper.seed(seed.toLong() and 0xffffffffL)
+        val key = ByteBuffer.allocate(16)
+        counter += RandomHelper.KEYSTREAM_GAMMA
+        key.putLong(RandomHelper.mix64(counter))
+        counter += RandomHelper.KEYSTREAM_GAMMA
+        key.putLong(RandomHelper.mix64(counter))
+        counter += RandomHelper.KEYSTREAM_GAMMA
+        nonce = RandomHelper.mix64(counter)
+        this.key = SecretKeySpec(key.array(), "AES")
+    }
+
+    /**
+     * Decrypt a chunk in place.
+     *
+     * @param chunk the encrypted chunk characters, each unit stored big-endian
+     * @param chunkIndex the chunk index
+     * @return [chunk]
+     */
+    fun decryptChunk(chunk: CharArray, chunkIndex: Int): CharArray {
+        val bytes = ByteBuffer.allocate(chunk.size * 2)
+        bytes.asCharBuffer().put(chunk)
+        crypt(bytes.array(), 0, bytes.capacity(), chunkIndex)
+        bytes.asCharBuffer().get(chunk)
+        return chunk
+    }
+
+    /**
+     * Encrypt or decrypt the bytes of a chunk in place. CTR mode is its own inverse.
+     *
+     * @param data the buffer holding the chunk
+     * @param offset the offset of the chunk in [data]
+     * @param length the length of the chunk in bytes
+     * @param chunkIndex the chunk index
+     */
+    fun crypt(data: ByteArray, offset: Int, length: Int, chunkIndex: Int) {
+        // Counter block: nonce, chunk index, then a block counter starting at 0
+        val iv = ByteBuffer.allocate(16).putLong(nonce).putInt(chunkIndex).putInt(0).array()
+        try {
+            val cipher = Cipher.getInstance(TRANSFORMATION)
+            cipher.init(Cipher.ENCRYPT_MODE, key, IvParameterSpec(iv))
+            cipher.doFinal(data, offset, length, data, offset)
+        } catch (e: GeneralSecurityException) {
+            throw RuntimeException("Failed to process string pool chunk $chunkIndex", e)
+        }
+    }
+
+    companion object {
+        private const val TRANSFORMATION = "AES/CTR/NoPadding"
+    }
+}
@@ -21,6 +21,11 @@ package com.androidacy.lsparanoid
  * Random helper for string obfuscation.
  */
 object RandomHelper {
+    /**
+     * Counter increment between two keystream words of the v2 pool format.
+     */
+    const val KEYSTREAM_GAMMA = -0x61c8864680b583ebL
+
     /**
      * Generate seed from input value.
      */
@@ -57,6 +62,23 @@ object RandomHelper {
         return result
     }
 
+    /**
+     * Generate the next 64-bit keystream word of the v2 pool format.
+     *
+     * The counter advances by [KEYSTREAM_GAMMA] per word and the word is the SplitMix64 finalizer
+     * of the counter, so each step yields four 16-bit keys with plain 64-bit arithmetic.
+     *
+     * @param counter the counter after it was advanced for this word
+     * @return the keystream word
+     */
+    @JvmStatic
+    fun mix64(counter: Long): Long {
+        var z = counter
+        z = (z xor (z ushr 30)) * -0x40a7b892e31b1a47L
+        z = (z xor (z ushr 27)) * -0x6b2fb644ecceee15L
+        return z xor (z ushr 31)
+    }
+
     @JvmStatic
     private fun rotl(x: Short, k: Int): Short {
         val value = x.toInt() and 0xFFFF
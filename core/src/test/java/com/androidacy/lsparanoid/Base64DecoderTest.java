@@ -4,8 +4,12 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -185,6 +189,40 @@ class Base64DecoderTest {
         assertNotNull(result, "Should return a result for ASCII input");
     }
 
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1, 2, 3, 4, 5, 6, 7, 100, 8191})
+    @DisplayName("decodeToChars() should match decode() for big-endian char data")
+    void decodeToCharsShouldMatchDecode(int length) {
+        char[] original = new char[length];
+        Random random = new Random(length);
+        for (int i = 0; i < length; i++) {
+            original[i] = (char) random.nextInt(0x10000);
+        }
+        ByteBuffer bytes = ByteBuffer.allocate(length * 2);
+        bytes.asCharBuffer().put(original);
+        String encoded = java.util.Base64.getEncoder().encodeToString(bytes.array());
+
+        char[] decoded = new char[length + 2];
+        assertEquals(length, Base64Decoder.decodeToChars(encoded, decoded, 1));
+        assertArrayEquals(original, Arrays.copyOfRange(decoded, 1, length + 1));
+        assertEquals(0, decoded[0], "Chars before offset should not be touched");
+        assertEquals(0, decoded[length + 1], "Chars after decoded data should not be touched");
+    }
+
+    @Test
+    @DisplayName("decodeToChars() should throw on invalid high characters")
+    void decodeToCharsShouldThrowOnInvalidHighCharacters() {
+        assertThrows(IllegalArgumentException.class,
+            () -> Base64Decoder.decodeToChars("AAAA\u00e9AAA", new char[3], 0));
+    }
+
+    @Test
+    @DisplayName("decodeToChars() should reject a too small output")
+    void decodeToCharsShouldRejectSmallOutput() {
+        assertThrows(IllegalArgumentException.class,
+            () -> Base64Decoder.decodeToChars("AAAAAAAA", new char[3], 1));
+    }
+
     // Helper method
     private void assertDecodes(String encoded, String expected) {
         byte[] result = Base64Decoder.decode(encoded);
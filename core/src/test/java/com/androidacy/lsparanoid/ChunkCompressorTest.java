@@ -0,0 +1,146 @@
+package com.androidacy.lsparanoid;
+
+import com.androidacy.lsparanoid.processor.ChunkCompressor;
+import com.androidacy.lsparanoid.processor.StringRegistryImpl;
+import com.androidacy.lsparanoid.processor.model.PoolFormat;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for compressed chunks.
+ * Tests chunks deflated by ChunkCompressor and inflated by DeobfuscatorHelper.inflateChunk.
+ */
+class ChunkCompressorTest {
+
+    @ParameterizedTest
+    @EnumSource(PoolFormat.class)
+    @DisplayName("Round-trip: compressed chunks inflate to the plaintext pool")
+    void roundTripCompressedChunks(PoolFormat format) {
+        List<String> originals = catalog(300);
+        originals.add("Unicode: 中文 😀 العربية");
+        originals.add("");
+
+        for (boolean packLatin1 : new boolean[] { false, true }) {
+            try (StringRegistryImpl registry = new StringRegistryImpl(1234, format, packLatin1)) {
+                long[] ids = new long[originals.size()];
+                for (int i = 0; i < ids.length; i++) {
+                    ids[i] = registry.registerString(originals.get(i));
+                }
+                assertTrue(registry.getChunkCount() > 1, "Pool should span several chunks");
+
+                char[] pool = inflatePool(registry, new ChunkCompressor(registry, format, packLatin1));
+                long mask = new KeystreamTable(1234).getIndexMask();
+                for (int i = 0; i < ids.length; i++) {
+                    assertEquals(originals.get(i), lookup(pool, ids[i], mask, packLatin1));
+                }
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Compressed chunks should be smaller than the pool and hide the plaintext")
+    void compressedChunksShouldShrinkAndHidePlaintext() {
+        try (StringRegistryImpl registry = new StringRegistryImpl(777)) {
+            for (String string : catalog(500)) {
+                registry.registerString(string);
+            }
+            ChunkCompressor compressor = new ChunkCompressor(registry, PoolFormat.V1, false);
+
+            long compressed = 0;
+            for (ChunkCompressor.CompressedChunk chunk : compressor.getChunks()) {
+                compressed += chunk.getByteLength();
+                assertEquals(0, chunk.getData().length % 2, "Chunk data should hold whole characters");
+                String data = new String(DeobfuscatorHelper.loadChunkFromByteArray(
+                    chunk.getData(), chunk.getData().length / 2));
+                assertFalse(data.contains("Error"), "Chunk data should not contain the plaintext");
+            }
+            long raw = registry.getTotalLength() * 2;
+            assertTrue(compressed * 2 < raw, "Repetitive catalogs should compress to less than half");
+        }
+    }
+
+    @Test
+    @DisplayName("Report should list the totals and every chunk")
+    void reportShouldListChunks() {
+        try (StringRegistryImpl registry = new StringRegistryImpl(5)) {
+            for (String string : catalog(300)) {
+                registry.registerString(string);
+            }
+            String report = new ChunkCompressor(registry, PoolFormat.V2, false).getReport();
+            assertTrue(report.contains("chunks:     " + registry.getChunkCount()));
+            assertTrue(report.contains("raw:        " + registry.getTotalLength() * 2 + " bytes"));
+            assertTrue(report.contains("inflate:"));
+            // Totals, a blank line, the table header and one line per chunk
+            assertEquals(7 + registry.getChunkCount(), report.split("\n").length);
+        }
+    }
+
+    @Test
+    @DisplayName("inflateChunk() should reject corrupted data")
+    void inflateChunkShouldRejectCorruptedData() {
+        try (StringRegistryImpl registry = new StringRegistryImpl(42)) {
+            for (String string : catalog(100)) {
+                registry.registerString(string);
+            }
+            ChunkCompressor.CompressedChunk chunk = new ChunkCompressor(registry, PoolFormat.V1, false).getChunks().get(0);
+            PoolCipher cipher = new PoolCipher(42);
+            char[] data = DeobfuscatorHelper.loadChunkFromByteArray(chunk.getData(), chunk.getData().length / 2);
+
+            // Truncated stream
+            assertThrows(RuntimeException.class, () ->
+                DeobfuscatorHelper.inflateChunk(data.clone(), chunk.getByteLength() / 2, chunk.getLength(), cipher, 0));
+            // Wrong chunk index, so the stream is decrypted with the wrong counter block
+            assertThrows(RuntimeException.class, () ->
+                DeobfuscatorHelper.inflateChunk(data.clone(), chunk.getByteLength(), chunk.getLength(), cipher, 1));
+        }
+    }
+
+    // Error catalog style strings, repetitive like localized messages
+    private static List<String> catalog(int count) {
+        List<String> strings = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            strings.add("Error " + i + ": the requested resource could not be loaded, please try again later ("
+                + "code " + (i * 31 % 997) + ")");
+        }
+        return strings;
+    }
+
+    private static char[] inflatePool(StringRegistryImpl registry, ChunkCompressor compressor) {
+        PoolCipher cipher = new PoolCipher(registry.getSeed());
+        char[] pool = new char[(int) registry.getTotalLength()];
+        // Inflate in reverse order, so no chunk relies on its predecessor
+        for (int i = compressor.getChunks().size() - 1; i >= 0; i--) {
+            ChunkCompressor.CompressedChunk chunk = compressor.getChunks().get(i);
+            char[] data = DeobfuscatorHelper.loadChunkFromByteArray(chunk.getData(), chunk.getData().length / 2);
+            char[] plaintext = DeobfuscatorHelper.inflateChunk(data, chunk.getByteLength(), chunk.getLength(), cipher, i);
+            System.arraycopy(plaintext, 0, pool, i * DeobfuscatorHelper.MAX_CHUNK_LENGTH, plaintext.length);
+        }
+        return pool;
+    }
+
+    // Reads a string out of a plaintext pool, in either layout of the length unit
+    private static String lookup(char[] pool, long id, long mask, boolean packLatin1) {
+        int index = (int) ((id >>> 32) ^ mask);
+        int header = pool[index];
+        if (!packLatin1) {
+            return new String(pool, index + 1, header);
+        }
+        int length = header >>> 1;
+        if ((header & 1) == 0) {
+            return new String(pool, index + 1, length);
+        }
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            char unit = pool[index + 1 + i / 2];
+            chars[i] = (char) ((i & 1) == 0 ? unit >>> 8 : unit & 0xff);
+        }
+        return new String(chars);
+    }
+}
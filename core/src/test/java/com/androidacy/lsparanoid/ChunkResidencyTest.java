@@ -0,0 +1,130 @@
+package com.androidacy.lsparanoid;
+
+import com.androidacy.lsparanoid.processor.model.CacheMode;
+import com.androidacy.lsparanoid.processor.model.ChunkStorage;
+import com.androidacy.lsparanoid.processor.model.DeobfuscatorOptions;
+import com.androidacy.lsparanoid.processor.model.PoolFormat;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the residency of chunks in generated deobfuscators.
+ * Checks that the chunk table holds the only copy of a loaded chunk, so trimming it releases the chunk.
+ */
+class ChunkResidencyTest {
+    private static final String LITERALS_CLASS = "residency/Literals";
+    private static final String DEOBFUSCATOR_CLASS = "com/androidacy/lsparanoid/Deobfuscator$test";
+    private static final int LITERAL_COUNT = 300;
+    private static final int CONSTANT_STRING_TAG = 8;
+
+    @TempDir
+    Path workDir;
+
+    @ParameterizedTest
+    @EnumSource(value = ChunkStorage.class, names = { "ARRAY", "BASE64", "RAW_STRING" })
+    @DisplayName("Chunk classes should keep no field and hand out a new copy on every load")
+    void chunkClassesShouldBeStateless(ChunkStorage storage) throws Exception {
+        try (ProcessedClasses processed = process(storage)) {
+            int chunkCount = 0;
+            for (String entry : processed.getEntryNames()) {
+                if (!entry.startsWith(DEOBFUSCATOR_CLASS + "$Chunk")) {
+                    continue;
+                }
+                chunkCount++;
+                String chunkClass = entry.substring(0, entry.length() - ".class".length());
+                assertEquals(0, processed.loadClass(chunkClass).getDeclaredFields().length);
+
+                Method load = processed.loadClass(chunkClass).getDeclaredMethod("load");
+                load.setAccessible(true);
+                char[] first = (char[]) load.invoke(null);
+                char[] second = (char[]) load.invoke(null);
+                assertNotSame(first, second, "Chunk classes should not cache the chunk");
+                assertArrayEquals(first, second);
+
+                // A string constant stays resolved for as long as its class is loaded
+                boolean pinsConstant = hasStringConstant(processed.getClassBytes(chunkClass));
+                assertEquals(storage != ChunkStorage.ARRAY, pinsConstant);
+            }
+            assertTrue(chunkCount > 1, "Pool should span several chunks");
+            assertLiteralsDecode(processed);
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = ChunkStorage.class, names = { "ARRAY", "RESOURCE" })
+    @DisplayName("trimMemory() should drop the only copy of loaded chunks, which then load again")
+    void trimShouldDropTheOnlyCopy(ChunkStorage storage) throws Exception {
+        try (ProcessedClasses processed = process(storage)) {
+            assertEquals(literal(0), processed.callLiteral(LITERALS_CLASS, 0));
+            AtomicReferenceArray<?> slots = getChunkSlots(processed);
+            assertInstanceOf(char[].class, slots.get(0), "Loaded chunk should be held by the table");
+            if (storage == ChunkStorage.RESOURCE) {
+                Field holder = processed.loadClass(DEOBFUSCATOR_CLASS + "$Pool").getDeclaredField("CHUNKS");
+                holder.setAccessible(true);
+                assertNull(((char[][]) holder.get(null))[0], "Pool holder should hand the chunk out once");
+            }
+
+            processed.loadClass(DEOBFUSCATOR_CLASS)
+                .getMethod("trimMemory", int.class)
+                .invoke(null, ChunkTable.TRIM_MEMORY_RUNNING_LOW);
+            for (int i = 0; i < slots.length(); i++) {
+                assertNull(slots.get(i), "Trimmed table should hold no chunk");
+            }
+
+            assertLiteralsDecode(processed);
+        }
+    }
+
+    private ProcessedClasses process(ChunkStorage storage) throws Exception {
+        String[] literals = new String[LITERAL_COUNT];
+        for (int i = 0; i < literals.length; i++) {
+            literals[i] = literal(i);
+        }
+        DeobfuscatorOptions options = new DeobfuscatorOptions(
+            0, storage, CacheMode.NONE, false, false, false, PoolFormat.V1, false, false, false);
+        return ProcessedClasses.process(workDir, Map.of(
+            LITERALS_CLASS, ProcessedClasses.newLiteralClass(LITERALS_CLASS, Opcodes.V1_8, literals)
+        ), options);
+    }
+
+    private static String literal(int index) {
+        return "Residency literal " + index + " padded to spread the pool over several chunks";
+    }
+
+    private static void assertLiteralsDecode(ProcessedClasses processed) throws Exception {
+        for (int i = 0; i < LITERAL_COUNT; i++) {
+            assertEquals(literal(i), processed.callLiteral(LITERALS_CLASS, i));
+        }
+    }
+
+    private static AtomicReferenceArray<?> getChunkSlots(ProcessedClasses processed) throws Exception {
+        Field chunks = processed.loadClass(DEOBFUSCATOR_CLASS).getDeclaredField("chunks");
+        chunks.setAccessible(true);
+        Field slots = ChunkTable.class.getDeclaredField("slots");
+        slots.setAccessible(true);
+        return (AtomicReferenceArray<?>) slots.get(chunks.get(null));
+    }
+
+    private static boolean hasStringConstant(byte[] classBytes) {
+        ClassReader reader = new ClassReader(classBytes);
+        for (int i = 1; i < reader.getItemCount(); i++) {
+            int offset = reader.getItem(i);
+            if (offset > 0 && classBytes[offset - 1] == CONSTANT_STRING_TAG) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -5,10 +5,16 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Timeout;
 import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -446,4 +452,217 @@ class ConcurrencyStressTest {
                 "Should handle substantial load (got " + totalOps.get() + " ops)");
         }
     }
+
+    @RepeatedTest(5)
+    @DisplayName("STRESS: ChunkTable should load each chunk once under contention")
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void chunkTableShouldLoadEachChunkOnce() throws Exception {
+        int chunkCount = 8;
+        int threads = 32;
+        AtomicIntegerArray loads = new AtomicIntegerArray(chunkCount);
+        ChunkTable table = new ChunkTable(chunkCount, index -> {
+            loads.incrementAndGet(index);
+            // Widen the race window
+            Thread.yield();
+            return new char[] { (char) index };
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch startLatch = new CountDownLatch(1);
+        ConcurrentLinkedQueue<String> errors = new ConcurrentLinkedQueue<>();
+        Set<char[]> instances = ConcurrentHashMap.newKeySet();
+
+        for (int t = 0; t < threads; t++) {
+            final int offset = t;
+            executor.submit(() -> {
+                try {
+                    startLatch.await();
+                    for (int i = 0; i < chunkCount * 100; i++) {
+                        int index = (i + offset) % chunkCount;
+                        char[] chunk = table.get(index);
+                        if (chunk[0] != (char) index) {
+                            errors.add("Wrong chunk for index " + index);
+                        }
+                        instances.add(chunk);
+                    }
+                } catch (Throwable e) {
+                    errors.add("Exception: " + e);
+                }
+                return null;
+            });
+        }
+
+        startLatch.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(8, TimeUnit.SECONDS));
+
+        assertTrue(errors.isEmpty(), "Concurrent chunk access should not cause errors: " + errors);
+        for (int i = 0; i < chunkCount; i++) {
+            assertEquals(1, loads.get(i), "Chunk " + i + " should be loaded exactly once");
+        }
+        assertEquals(chunkCount, instances.size(), "Every thread should see the same chunk instances");
+    }
+
+    @Test
+    @DisplayName("STRESS: ChunkTable should let waiters retry after a failed load")
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void chunkTableShouldRetryAfterFailedLoad() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        ChunkTable table = new ChunkTable(1, index -> {
+            if (loads.incrementAndGet() == 1) {
+                throw new IllegalStateException("Simulated load failure");
+            }
+            return new char[] { 'x' };
+        });
+
+        assertThrows(IllegalStateException.class, () -> table.get(0));
+
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        List<Future<char[]>> results = new ArrayList<>();
+        for (int t = 0; t < 16; t++) {
+            results.add(executor.submit(() -> table.get(0)));
+        }
+        for (Future<char[]> result : results) {
+            assertEquals('x', result.get(5, TimeUnit.SECONDS)[0]);
+        }
+        executor.shutdown();
+
+        assertEquals(2, loads.get(), "Chunk should be loaded once more after the failure");
+    }
+
+    @Test
+    @DisplayName("STRESS: get() racing with prewarm() should reuse the in-flight load")
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void getShouldReuseInFlightPrewarmLoad() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loadStarted = new CountDownLatch(1);
+        CountDownLatch releaseLoad = new CountDownLatch(1);
+        ChunkTable table = new ChunkTable(1, index -> {
+            loads.incrementAndGet();
+            loadStarted.countDown();
+            try {
+                releaseLoad.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return new char[] { 'x' };
+        });
+
+        Future<?> prewarm = table.prewarm(null);
+        assertTrue(loadStarted.await(5, TimeUnit.SECONDS), "Prewarm should start loading the chunk");
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<char[]>> results = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            results.add(executor.submit(() -> table.get(0)));
+        }
+        releaseLoad.countDown();
+
+        prewarm.get(5, TimeUnit.SECONDS);
+        for (Future<char[]> result : results) {
+            assertEquals('x', result.get(5, TimeUnit.SECONDS)[0]);
+        }
+        executor.shutdown();
+
+        assertEquals(1, loads.get(), "Chunk should be loaded only by the prewarm");
+    }
+
+    @Test
+    @DisplayName("prewarm() should load only the requested chunks on the given executor")
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void prewarmShouldLoadRequestedChunks() throws Exception {
+        AtomicIntegerArray loads = new AtomicIntegerArray(4);
+        ChunkTable table = new ChunkTable(4, index -> {
+            loads.incrementAndGet(index);
+            return new char[] { (char) index };
+        });
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        table.prewarm(executor, new int[] { 1, 3 }).get(5, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        assertEquals(0, loads.get(0));
+        assertEquals(1, loads.get(1));
+        assertEquals(0, loads.get(2));
+        assertEquals(1, loads.get(3));
+
+        table.prewarm(null).get(5, TimeUnit.SECONDS);
+        for (int i = 0; i < 4; i++) {
+            assertEquals(1, loads.get(i), "Chunk " + i + " should be loaded exactly once");
+        }
+        assertTrue(ChunkTable.completedPrewarm().isDone());
+    }
+
+    @Test
+    @DisplayName("prewarm() should surface load failures through its future")
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void prewarmShouldSurfaceFailures() {
+        ChunkTable table = new ChunkTable(1, index -> {
+            throw new IllegalStateException("Simulated load failure");
+        });
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+            () -> table.prewarm(null).get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = { false, true })
+    @DisplayName("trim() should drop loaded chunks so they reload on next access")
+    void trimShouldDropLoadedChunks(boolean softReferences) {
+        AtomicInteger loads = new AtomicInteger();
+        ChunkTable table = new ChunkTable(2, index -> {
+            loads.incrementAndGet();
+            return new char[] { (char) index };
+        }, softReferences);
+
+        char[] first = table.get(0);
+        assertSame(first, table.get(0), "Loaded chunk should be reused");
+        assertEquals(1, loads.get());
+
+        assertFalse(table.trim(ChunkTable.TRIM_MEMORY_RUNNING_LOW - 1), "Low levels should be ignored");
+        assertSame(first, table.get(0));
+        assertEquals(1, loads.get());
+
+        assertTrue(table.trim(ChunkTable.TRIM_MEMORY_RUNNING_LOW));
+        assertEquals(0, table.get(0)[0], "Dropped chunk should be loaded again");
+        assertEquals(1, table.get(1)[0]);
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    @DisplayName("STRESS: get() racing with trim() should always return the chunk")
+    @Timeout(value = 30, unit = TimeUnit.SECONDS)
+    void getRacingWithTrimShouldReturnChunk() throws Exception {
+        int chunkCount = 8;
+        ChunkTable table = new ChunkTable(chunkCount, index -> new char[] { (char) index }, true);
+        AtomicBoolean running = new AtomicBoolean(true);
+
+        Thread trimmer = new Thread(() -> {
+            while (running.get()) {
+                table.trim(ChunkTable.TRIM_MEMORY_RUNNING_LOW);
+            }
+        });
+        trimmer.start();
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 100_000; i++) {
+                        int index = i % chunkCount;
+                        assertEquals(index, table.get(index)[0]);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            running.set(false);
+            trimmer.join();
+            executor.shutdown();
+        }
+    }
 }
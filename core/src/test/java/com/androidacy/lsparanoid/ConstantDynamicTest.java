@@ -0,0 +1,92 @@
+package com.androidacy.lsparanoid;
+
+import com.androidacy.lsparanoid.processor.model.CacheMode;
+import com.androidacy.lsparanoid.processor.model.ChunkStorage;
+import com.androidacy.lsparanoid.processor.model.DeobfuscatorOptions;
+import com.androidacy.lsparanoid.processor.model.PoolFormat;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ConstantDynamic;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for string literals replaced with dynamic constants.
+ * Runs classes through ParanoidProcessor with useConstantDynamic and loads the patched output.
+ */
+class ConstantDynamicTest {
+    private static final String MODERN_CLASS = "condy/Modern";
+    private static final String LEGACY_CLASS = "condy/Legacy";
+    private static final String MODERN_LITERAL = "Resolved through a dynamic constant";
+    private static final String LEGACY_LITERAL = "Resolved through getString";
+
+    @TempDir
+    Path workDir;
+
+    @Test
+    @DisplayName("Literals of Java 11+ classes should resolve through ConstantBootstraps.invoke")
+    void modernClassesShouldUseDynamicConstants() throws Exception {
+        try (ProcessedClasses processed = process()) {
+            byte[] patched = processed.getClassBytes(MODERN_CLASS);
+            List<Object> constants = ldcConstants(patched);
+            assertEquals(1, constants.size());
+            ConstantDynamic constant = assertInstanceOf(ConstantDynamic.class, constants.get(0));
+            assertEquals("java/lang/invoke/ConstantBootstraps", constant.getBootstrapMethod().getOwner());
+            assertEquals("invoke", constant.getBootstrapMethod().getName());
+
+            String first = processed.callLiteral(MODERN_CLASS, 0);
+            assertEquals(MODERN_LITERAL, first);
+            // The constant is resolved once, later executions load the same instance
+            assertSame(first, processed.callLiteral(MODERN_CLASS, 0));
+        }
+    }
+
+    @Test
+    @DisplayName("Literals of classes older than Java 11 should keep the getString call")
+    void legacyClassesShouldCallGetString() throws Exception {
+        try (ProcessedClasses processed = process()) {
+            byte[] patched = processed.getClassBytes(LEGACY_CLASS);
+            List<Object> constants = ldcConstants(patched);
+            assertTrue(constants.stream().noneMatch(ConstantDynamic.class::isInstance));
+            assertTrue(constants.stream().noneMatch(String.class::isInstance), "Literal should not be loaded as is");
+
+            assertEquals(LEGACY_LITERAL, processed.callLiteral(LEGACY_CLASS, 0));
+        }
+    }
+
+    private ProcessedClasses process() throws Exception {
+        DeobfuscatorOptions options = new DeobfuscatorOptions(
+            0, ChunkStorage.BASE64, CacheMode.NONE, true, false, false, PoolFormat.V1, false, false, false);
+        return ProcessedClasses.process(workDir, Map.of(
+            MODERN_CLASS, ProcessedClasses.newLiteralClass(MODERN_CLASS, Opcodes.V11, MODERN_LITERAL),
+            LEGACY_CLASS, ProcessedClasses.newLiteralClass(LEGACY_CLASS, Opcodes.V1_8, LEGACY_LITERAL)
+        ), options);
+    }
+
+    private static List<Object> ldcConstants(byte[] classBytes) {
+        List<Object> constants = new ArrayList<>();
+        new ClassReader(classBytes).accept(new ClassVisitor(Opcodes.ASM9) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature,
+                                             String[] exceptions) {
+                return new MethodVisitor(Opcodes.ASM9) {
+                    @Override
+                    public void visitLdcInsn(Object value) {
+                        constants.add(value);
+                    }
+                };
+            }
+        }, 0);
+        return constants;
+    }
+}
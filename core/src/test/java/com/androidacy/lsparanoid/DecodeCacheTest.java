@@ -0,0 +1,152 @@
+package com.androidacy.lsparanoid;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for DecodeCache.
+ * Tests the bounded long-keyed cache emitted into generated deobfuscators.
+ */
+class DecodeCacheTest {
+
+    @Test
+    @DisplayName("get() should return null for unknown ID and count a miss")
+    void getShouldReturnNullForUnknownId() {
+        DecodeCache cache = new DecodeCache(16);
+        assertNull(cache.get(42L));
+        assertEquals(0L, cache.getHitCount());
+        assertEquals(1L, cache.getMissCount());
+    }
+
+    @Test
+    @DisplayName("get() should return the same instance that was put and count a hit")
+    void getShouldReturnPutValue() {
+        DecodeCache cache = new DecodeCache(16);
+        String value = new String("cached value");
+        cache.put(42L, value);
+
+        assertSame(value, cache.get(42L), "Cache should return the stored instance");
+        assertEquals(1L, cache.getHitCount());
+        assertEquals(0L, cache.getMissCount());
+    }
+
+    @Test
+    @DisplayName("put() should replace value for existing ID")
+    void putShouldReplaceExistingId() {
+        DecodeCache cache = new DecodeCache(16);
+        cache.put(7L, "first");
+        cache.put(7L, "second");
+        assertEquals("second", cache.get(7L));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 7, 8, 9, 100, 1024})
+    @DisplayName("Capacity should be rounded up to a power of two of at least PROBE_LIMIT")
+    void capacityShouldBeRoundedUp(int requested) {
+        int capacity = new DecodeCache(requested).getCapacity();
+        assertTrue(capacity >= requested, "Capacity should not shrink");
+        assertTrue(capacity >= DecodeCache.PROBE_LIMIT, "Capacity should hold a probe window");
+        assertEquals(0, capacity & (capacity - 1), "Capacity should be a power of two");
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, -1})
+    @DisplayName("Non-positive capacity should be rejected")
+    void nonPositiveCapacityShouldBeRejected(int capacity) {
+        assertThrows(IllegalArgumentException.class, () -> new DecodeCache(capacity));
+    }
+
+    @Test
+    @DisplayName("Cache should stay bounded when more IDs than slots are inserted")
+    void cacheShouldStayBounded() {
+        DecodeCache cache = new DecodeCache(16);
+        for (long id = 0; id < 10_000; id++) {
+            cache.put(id << 32, "value" + id);
+        }
+
+        int cached = 0;
+        for (long id = 0; id < 10_000; id++) {
+            String value = cache.get(id << 32);
+            if (value != null) {
+                assertEquals("value" + id, value, "Cached value should match its ID");
+                cached++;
+            }
+        }
+        assertTrue(cached > 0, "Recent entries should be cached");
+        assertTrue(cached <= cache.getCapacity(), "Cache should not exceed its capacity");
+    }
+
+    @Test
+    @DisplayName("Referenced entries should get a second chance on eviction")
+    void referencedEntriesShouldSurviveEviction() {
+        DecodeCache cache = new DecodeCache(DecodeCache.PROBE_LIMIT);
+        long hot = 1L << 32;
+        cache.put(hot, "hot");
+
+        for (long id = 2; id < 2 + DecodeCache.PROBE_LIMIT * 4; id++) {
+            assertEquals("hot", cache.get(hot), "Hot entry should survive eviction of cold entries");
+            cache.put(id << 32, "cold" + id);
+        }
+    }
+
+    @Test
+    @DisplayName("clear() should drop entries but keep counters")
+    void clearShouldDropEntries() {
+        DecodeCache cache = new DecodeCache(16);
+        cache.put(1L, "one");
+        assertEquals("one", cache.get(1L));
+
+        cache.clear();
+
+        assertNull(cache.get(1L));
+        assertEquals(1L, cache.getHitCount());
+        assertEquals(1L, cache.getMissCount());
+    }
+
+    @Test
+    @DisplayName("STRESS: Concurrent get/put should never return a wrong value")
+    @Timeout(value = 10, unit = TimeUnit.SECONDS)
+    void concurrentGetPutShouldBeConsistent() throws Exception {
+        DecodeCache cache = new DecodeCache(64);
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch startLatch = new CountDownLatch(1);
+        AtomicReference<String> error = new AtomicReference<>();
+
+        for (int t = 0; t < threads; t++) {
+            final int seed = t;
+            executor.submit(() -> {
+                try {
+                    startLatch.await();
+                    for (int i = 0; i < 100_000; i++) {
+                        long id = ((long) ((i * 31 + seed) % 500)) << 32;
+                        String value = cache.get(id);
+                        if (value == null) {
+                            cache.put(id, Long.toString(id));
+                        } else if (!value.equals(Long.toString(id))) {
+                            error.compareAndSet(null, "Wrong value for " + id + ": " + value);
+                        }
+                    }
+                } catch (Throwable e) {
+                    error.compareAndSet(null, e.toString());
+                }
+                return null;
+            });
+        }
+
+        startLatch.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(8, TimeUnit.SECONDS));
+        assertNull(error.get(), "Cache should stay consistent: " + error.get());
+        assertEquals(threads * 100_000L, cache.getHitCount() + cache.getMissCount(),
+            "Every lookup should be counted");
+    }
+}
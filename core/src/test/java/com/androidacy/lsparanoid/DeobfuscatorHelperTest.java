@@ -3,11 +3,17 @@ package com.androidacy.lsparanoid;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 /**
  * Unit tests for DeobfuscatorHelper.
@@ -186,6 +192,278 @@ class DeobfuscatorHelperTest {
         assertEquals(testData, chunks[0]);
     }
 
+    @Test
+    @DisplayName("loadChunkFromByteArray() should decode big-endian characters")
+    void loadChunkFromByteArrayShouldDecodeCharacters() throws IOException {
+        String testData = "Hello \u4e16\u754c \ud83c\udf0d \uffff\u0000";
+        byte[] data = createCharData(testData);
+
+        char[] chunk = DeobfuscatorHelper.loadChunkFromByteArray(data, testData.length());
+
+        assertArrayEquals(testData.toCharArray(), chunk);
+    }
+
+    @Test
+    @DisplayName("loadChunkFromByteArray() should fail on truncated data")
+    void loadChunkFromByteArrayShouldFailOnTruncatedData() throws IOException {
+        byte[] data = createCharData("ABC");
+        assertThrows(RuntimeException.class,
+            () -> DeobfuscatorHelper.loadChunkFromByteArray(data, 4));
+    }
+
+    @Test
+    @DisplayName("decode() should match getString() for character chunks")
+    void decodeShouldMatchGetString() {
+        try (com.androidacy.lsparanoid.processor.StringRegistryImpl registry =
+                 new com.androidacy.lsparanoid.processor.StringRegistryImpl(2024)) {
+            long first = registry.registerString("First string");
+            long second = registry.registerString("Second \u00e9\u00e8 string");
+
+            byte[] data = registry.getDataAsByteArray();
+            long totalLength = registry.getTotalLength();
+            String[] stringChunks = DeobfuscatorHelper.loadChunksFromByteArray(data, totalLength);
+            char[][] charChunks = new char[][] {
+                DeobfuscatorHelper.loadChunkFromByteArray(data, (int) totalLength)
+            };
+
+            assertEquals(DeobfuscatorHelper.getString(first, stringChunks),
+                DeobfuscatorHelper.decode(first, charChunks));
+            assertEquals("Second \u00e9\u00e8 string", DeobfuscatorHelper.decode(second, charChunks));
+        }
+    }
+
+    @Test
+    @DisplayName("length(), getChars() and appendTo() should match decode()")
+    void allocationFreeDecodeShouldMatchDecode() throws IOException {
+        try (com.androidacy.lsparanoid.processor.StringRegistryImpl registry =
+                 new com.androidacy.lsparanoid.processor.StringRegistryImpl(2024)) {
+            long first = registry.registerString("First string");
+            long second = registry.registerString("Second éè 😀 string");
+            long empty = registry.registerString("");
+
+            byte[] data = registry.getDataAsByteArray();
+            char[][] chunks = new char[][] {
+                DeobfuscatorHelper.loadChunkFromByteArray(data, (int) registry.getTotalLength())
+            };
+
+            for (long id : new long[] { first, second, empty }) {
+                String expected = DeobfuscatorHelper.decode(id, chunks);
+                assertEquals(expected.length(), DeobfuscatorHelper.length(id, chunks));
+
+                char[] buffer = new char[expected.length() + 4];
+                assertEquals(expected.length(), DeobfuscatorHelper.getChars(id, chunks, buffer, 2));
+                assertEquals(expected, new String(buffer, 2, expected.length()));
+
+                StringBuilder builder = new StringBuilder("> ");
+                DeobfuscatorHelper.appendTo(id, chunks, builder);
+                assertEquals("> " + expected, builder.toString());
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("getChars() should not write anything when the string doesn't fit")
+    void getCharsShouldRejectSmallBuffer() {
+        try (com.androidacy.lsparanoid.processor.StringRegistryImpl registry =
+                 new com.androidacy.lsparanoid.processor.StringRegistryImpl(2024)) {
+            long id = registry.registerString("Too long");
+            byte[] data = registry.getDataAsByteArray();
+            char[][] chunks = new char[][] {
+                DeobfuscatorHelper.loadChunkFromByteArray(data, (int) registry.getTotalLength())
+            };
+
+            char[] buffer = new char[10];
+            assertThrows(IndexOutOfBoundsException.class, () -> DeobfuscatorHelper.getChars(id, chunks, buffer, 3));
+            assertThrows(IndexOutOfBoundsException.class, () -> DeobfuscatorHelper.getChars(id, chunks, buffer, -1));
+            assertArrayEquals(new char[10], buffer, "Buffer should be left untouched");
+        }
+    }
+
+    @Test
+    @DisplayName("getChars() and appendTo() should not allocate")
+    void allocationFreeDecodeShouldNotAllocate() throws IOException {
+        java.lang.management.ThreadMXBean threads = java.lang.management.ManagementFactory.getThreadMXBean();
+        assumeTrue(threads instanceof com.sun.management.ThreadMXBean,
+            "Per-thread allocation counters are not available");
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        assumeTrue(allocations.isThreadAllocatedMemorySupported() && allocations.isThreadAllocatedMemoryEnabled(),
+            "Per-thread allocation counters are disabled");
+
+        try (com.androidacy.lsparanoid.processor.StringRegistryImpl registry =
+                 new com.androidacy.lsparanoid.processor.StringRegistryImpl(2024)) {
+            long id = registry.registerString("A string that is appended to a builder on a hot path");
+            byte[] data = registry.getDataAsByteArray();
+            char[][] chunks = new char[][] {
+                DeobfuscatorHelper.loadChunkFromByteArray(data, (int) registry.getTotalLength())
+            };
+
+            int rounds = 10_000;
+            char[] buffer = new char[64];
+            StringBuilder builder = new StringBuilder(64);
+            // Warm up so that the measured loop runs compiled code without lazy linking
+            for (int i = 0; i < rounds; i++) {
+                DeobfuscatorHelper.getChars(id, chunks, buffer, 0);
+                builder.setLength(0);
+                DeobfuscatorHelper.appendTo(id, chunks, builder);
+            }
+
+            long threadId = Thread.currentThread().getId();
+            long start = allocations.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < rounds; i++) {
+                DeobfuscatorHelper.getChars(id, chunks, buffer, 0);
+                builder.setLength(0);
+                DeobfuscatorHelper.appendTo(id, chunks, builder);
+            }
+            long allocationFreeBytes = allocations.getThreadAllocatedBytes(threadId) - start;
+
+            // Allow for the counter reads themselves, but not for a single buffer per round
+            assertTrue(allocationFreeBytes < rounds, "getChars() and appendTo() should not allocate");
+        }
+    }
+
+    @Test
+    @DisplayName("decode() should throw on null character chunk")
+    void decodeShouldThrowOnNullChunk() {
+        assertThrows(IllegalStateException.class,
+            () -> DeobfuscatorHelper.decode(0L, new char[1][]));
+    }
+
+    @Test
+    @DisplayName("loadChunksFromPool() should split the pool at the header offsets")
+    void loadChunksFromPoolShouldSplitChunks() throws IOException {
+        byte[] first = createCharData("First \u4e16");
+        byte[] second = createCharData("Second");
+        int headerSize = DeobfuscatorHelper.POOL_HEADER_SIZE + 3 * 4;
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(baos);
+        dos.writeInt(DeobfuscatorHelper.POOL_MAGIC);
+        dos.writeInt(2);
+        dos.writeInt(headerSize);
+        dos.writeInt(headerSize + first.length);
+        dos.writeInt(headerSize + first.length + second.length);
+        dos.write(first);
+        dos.write(second);
+
+        char[][] chunks = DeobfuscatorHelper.loadChunksFromPool(ByteBuffer.wrap(baos.toByteArray()));
+
+        assertEquals(2, chunks.length);
+        assertArrayEquals("First \u4e16".toCharArray(), chunks[0]);
+        assertArrayEquals("Second".toCharArray(), chunks[1]);
+    }
+
+    @Test
+    @DisplayName("loadChunksFromPool() should reject data without the pool magic")
+    void loadChunksFromPoolShouldRejectBadMagic() {
+        ByteBuffer pool = ByteBuffer.allocate(DeobfuscatorHelper.POOL_HEADER_SIZE + 4);
+        assertThrows(IOException.class, () -> DeobfuscatorHelper.loadChunksFromPool(pool));
+    }
+
+    @Test
+    @DisplayName("loadChunksFromPoolResource() should throw for missing resource")
+    void loadChunksFromPoolResourceShouldThrowForMissingResource() {
+        RuntimeException exception = assertThrows(RuntimeException.class,
+            () -> DeobfuscatorHelper.loadChunksFromPoolResource(DeobfuscatorHelperTest.class, "/missing.bin"));
+        assertEquals("Failed to load obfuscated strings", exception.getMessage());
+    }
+
+    @Test
+    @DisplayName("loadChunkFromPoolResource() should throw for missing resource")
+    void loadChunkFromPoolResourceShouldThrowForMissingResource() {
+        RuntimeException exception = assertThrows(RuntimeException.class,
+            () -> DeobfuscatorHelper.loadChunkFromPoolResource(DeobfuscatorHelperTest.class, "/missing.bin", 0));
+        assertEquals("Failed to load obfuscated strings", exception.getMessage());
+    }
+
+    @Test
+    @DisplayName("loadChunkFromLongArray() should unpack four characters per word, high bits first")
+    void loadChunkFromLongArrayShouldUnpackWords() {
+        char[] expected = "Chunk ok".toCharArray();
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        buffer.asCharBuffer().put(expected);
+        long[] words = { buffer.getLong(0), buffer.getLong(8) };
+
+        assertArrayEquals(expected, DeobfuscatorHelper.loadChunkFromLongArray(words, expected.length));
+        assertArrayEquals("Chunk".toCharArray(), DeobfuscatorHelper.loadChunkFromLongArray(words, 5));
+        assertThrows(RuntimeException.class, () -> DeobfuscatorHelper.loadChunkFromLongArray(words, 9));
+    }
+
+    @Test
+    @DisplayName("getString() should load missing chunks through the given ChunkLoader")
+    void getStringShouldUseChunkLoader() {
+        try (com.androidacy.lsparanoid.processor.StringRegistryImpl registry =
+                 new com.androidacy.lsparanoid.processor.StringRegistryImpl(4242)) {
+            long id = registry.registerString("Lazy chunk");
+            byte[] data = registry.getDataAsByteArray();
+            int totalLength = (int) registry.getTotalLength();
+
+            AtomicInteger loads = new AtomicInteger();
+            ChunkLoader loader = index -> {
+                loads.incrementAndGet();
+                return DeobfuscatorHelper.loadChunkFromByteArray(data, totalLength);
+            };
+
+            String[] chunks = new String[1];
+            assertEquals("Lazy chunk", DeobfuscatorHelper.getString(id, chunks, loader));
+            assertEquals("Lazy chunk", DeobfuscatorHelper.getString(id, chunks, loader));
+            assertEquals(1, loads.get(), "Loaded chunk should be stored in the chunks array");
+        }
+    }
+
+    @Test
+    @DisplayName("getString() should fail on a missing chunk without a ChunkLoader")
+    void getStringShouldFailWithoutChunkLoader() {
+        assertThrows(IllegalStateException.class,
+            () -> DeobfuscatorHelper.getString(0L, new String[1], (ChunkLoader) null));
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    @DisplayName("Deprecated getString() with a deobfuscator class should decode preloaded chunks")
+    void deprecatedGetStringShouldDecodeLoadedChunks() {
+        try (com.androidacy.lsparanoid.processor.StringRegistryImpl registry =
+                 new com.androidacy.lsparanoid.processor.StringRegistryImpl(4242)) {
+            long id = registry.registerString("Preloaded chunk");
+            String[] chunks = DeobfuscatorHelper.loadChunksFromByteArray(
+                registry.getDataAsByteArray(), registry.getTotalLength());
+
+            assertEquals("Preloaded chunk", DeobfuscatorHelper.getString(id, chunks, Object.class));
+            assertThrows(IllegalStateException.class,
+                () -> DeobfuscatorHelper.getString(id, new String[1], Object.class));
+        }
+    }
+
+    @Test
+    @DisplayName("Bulk chunk loading should match per-char stream decoding")
+    void bulkChunkLoadingShouldMatchPerCharDecoding() throws IOException {
+        int totalLength = DeobfuscatorHelper.MAX_CHUNK_LENGTH * 3 + 17;
+        byte[] data = new byte[totalLength * 2];
+        new Random(42).nextBytes(data);
+
+        assertArrayEquals(loadChunksPerChar(data, totalLength),
+            DeobfuscatorHelper.loadChunksFromByteArray(data, totalLength),
+            "Bulk decoding should produce the same chunks");
+    }
+
+    // Previous implementation, kept as the reference for bulk loading
+    private static String[] loadChunksPerChar(byte[] data, long totalLength) throws IOException {
+        DataInputStream dis = new DataInputStream(new ByteArrayInputStream(data));
+        int chunkCount = (int) ((totalLength + DeobfuscatorHelper.MAX_CHUNK_LENGTH - 1) / DeobfuscatorHelper.MAX_CHUNK_LENGTH);
+        String[] chunks = new String[chunkCount];
+        long charsRead = 0;
+        int chunkIndex = 0;
+        while (charsRead < totalLength) {
+            int chunkSize = (int) Math.min(DeobfuscatorHelper.MAX_CHUNK_LENGTH, totalLength - charsRead);
+            char[] buffer = new char[chunkSize];
+            for (int i = 0; i < chunkSize; i++) {
+                buffer[i] = dis.readChar();
+            }
+            chunks[chunkIndex++] = new String(buffer);
+            charsRead += chunkSize;
+        }
+        return chunks;
+    }
+
     // Helper method to create byte array with char data (2 bytes per char, big-endian)
     private byte[] createCharData(String s) throws IOException {
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
@@ -0,0 +1,525 @@
+package com.androidacy.lsparanoid;
+
+import com.androidacy.lsparanoid.processor.model.CacheMode;
+import com.androidacy.lsparanoid.processor.model.ChunkStorage;
+import com.androidacy.lsparanoid.processor.model.DeobfuscatorOptions;
+import com.androidacy.lsparanoid.processor.model.PoolFormat;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for generated deobfuscators.
+ * Runs classes through ParanoidProcessor and checks the generated code by calling the patched literals.
+ */
+class GeneratedDeobfuscatorTest {
+    private static final String LITERALS_CLASS = "generated/Literals";
+    private static final String CONSTANTS_CLASS = "generated/Constants";
+    private static final String LOOP_CLASS = "generated/Loop";
+    private static final String DEOBFUSCATOR_CLASS = "com/androidacy/lsparanoid/Deobfuscator$test";
+    private static final String DEOBFUSCATOR_HELPER_CLASS = "com/androidacy/lsparanoid/DeobfuscatorHelper";
+    private static final String STRING_DESCRIPTOR = "Ljava/lang/String;";
+    private static final String STATIC_INITIALIZER_LITERAL = "Assigned in the static initializer";
+    private static final String LOOP_LITERAL = "Appended in a loop, ";
+    private static final String STRAIGHT_LINE_LITERAL = "Returned once";
+    private static final String[] STRINGS = {
+        "",
+        "x",
+        "Plain ASCII",
+        "Latin-1: é, ÿ and ß",
+        "中 at the start",
+        "In the middle: 中文 and more",
+        "At the end: €",
+        "Emoji: 😀",
+        "Latin-1 across chunks: " + "é".repeat(2 * DeobfuscatorHelper.MAX_CHUNK_LENGTH),
+        "Widened across chunks: " + "x".repeat(DeobfuscatorHelper.MAX_CHUNK_LENGTH) + "€",
+        "After the long strings",
+        "Odd",
+        "Even",
+    };
+
+    @TempDir
+    Path workDir;
+
+    @Test
+    @DisplayName("The chunk loader should only be created by the deobfuscator itself")
+    void chunkLoaderShouldNotBeConstructible() throws Exception {
+        DeobfuscatorOptions options = new DeobfuscatorOptions(
+            0, ChunkStorage.BASE64, CacheMode.NONE, false, false, false, PoolFormat.V1, false, false, false);
+        try (ProcessedClasses processed = ProcessedClasses.process(workDir, Map.of(
+            LITERALS_CLASS, ProcessedClasses.newLiteralClass(LITERALS_CLASS, Opcodes.V1_8, "Loaded through the table")
+        ), options)) {
+            assertEquals("Loaded through the table", processed.callLiteral(LITERALS_CLASS, 0));
+
+            Class<?> deobfuscator = processed.loadClass(DEOBFUSCATOR_CLASS);
+            assertTrue(ChunkLoader.class.isAssignableFrom(deobfuscator));
+            for (Constructor<?> constructor : deobfuscator.getDeclaredConstructors()) {
+                assertTrue(Modifier.isPrivate(constructor.getModifiers()), "Deobfuscator constructors should be private");
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = { 1, 64 })
+    @DisplayName("Decode cache should return the plaintext on misses and hits")
+    void decodeCacheShouldRoundTrip(int cacheSize) throws Exception {
+        DeobfuscatorOptions options = new DeobfuscatorOptions(
+            cacheSize, ChunkStorage.BASE64, CacheMode.NONE, false, false, false, PoolFormat.V1, false, false, false);
+        try (ProcessedClasses processed = process(options, STRINGS)) {
+            assertLiteralsDecode(processed, STRINGS);
+
+            Class<?> deobfuscator = processed.loadClass(DEOBFUSCATOR_CLASS);
+            long hits = (long) deobfuscator.getMethod("getCacheHitCount").invoke(null);
+            long misses = (long) deobfuscator.getMethod("getCacheMissCount").invoke(null);
+            assertTrue(misses >= STRINGS.length, "First lookups should miss");
+            assertTrue(hits >= STRINGS.length, "Repeated lookups should hit");
+
+            processed.callLiteral(LITERALS_CLASS, 2);
+            hits = (long) deobfuscator.getMethod("getCacheHitCount").invoke(null);
+            assertEquals(STRINGS[2], processed.callLiteral(LITERALS_CLASS, 2));
+            assertEquals(hits + 1, (long) deobfuscator.getMethod("getCacheHitCount").invoke(null));
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(ChunkStorage.class)
+    @DisplayName("Chunks should decode from every storage, again after they are trimmed")
+    void chunkStorageShouldRoundTrip(ChunkStorage storage) throws Exception {
+        DeobfuscatorOptions options = new DeobfuscatorOptions(
+            0, storage, CacheMode.NONE, false, false, false, PoolFormat.V1, false, false, false);
+        try (ProcessedClasses processed = process(options, STRINGS)) {
+            assertLiteralsDecode(processed, STRINGS);
+            trimMemory(processed);
+            assertLiteralsDecode(processed, STRINGS);
+        }
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+        "1, false",
+        "1, true",
+        "2, false",
+        "13, false",
+        "13, true"
+    })
+    @DisplayName("String constants should be assigned their plaintext, in one getStrings() call if there are several")
+    void stringConstantsShouldRoundTrip(int constantCount, boolean hasStaticInitializer) throws Exception {
+        String[] constants = Arrays.copyOf(STRINGS, constantCount);
+        DeobfuscatorOptions options = new DeobfuscatorOptions(
+            0, ChunkStorage.BASE64, CacheMode.NONE, false, false, false, PoolFormat.V1, false, false, false);
+        try (ProcessedClasses processed = ProcessedClasses.process(workDir, Map.of(
+            CONSTANTS_CLASS, newConstantsClass(constants, hasStaticInitializer)
+        ), options)) {
+            byte[] patched = processed.getClassBytes(CONSTANTS_CLASS);
+            assertTrue(getConstantValues(patched).isEmpty(), "Constants should be removed from the class file");
+            assertEquals(constantCount > 1, getStaticInitializerCalls(patched).contains("getStrings"));
+
+            Class<?> constantsClass = processed.loadClass(CONSTANTS_CLASS);
+            for (int i = 0; i < constantCount; i++) {
+                assertEquals(constants[i], constantsClass.getField("CONSTANT_" + i).get(null));
+            }
+            if (hasStaticInitializer) {
+                assertEquals(STATIC_INITIALIZER_LITERAL, constantsClass.getField("assigned").get(null));
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(CacheMode.class)
+    @DisplayName("Cached literals should decode once into a synthetic field")
+    void cachedLiteralsShouldRoundTrip(CacheMode cacheMode) throws Exception {
+        DeobfuscatorOptions options = new DeobfuscatorOptions(
+            0, ChunkStorage.BASE64, cacheMode, false, false, false, PoolFormat.V1, false, false, false);
+        try (ProcessedClasses processed = ProcessedClasses.process(workDir, Map.of(
+            LOOP_CLASS, newLoopClass()
+        ), options)) {
+            Class<?> loopClass = processed.loadClass(LOOP_CLASS);
+            // LOOP caches the literal of repeat(), CALL_SITE the one of once() too
+            Set<String> cachedLiterals = cacheMode == CacheMode.NONE ? Set.of()
+                : cacheMode == CacheMode.LOOP ? Set.of(LOOP_LITERAL)
+                : Set.of(LOOP_LITERAL, STRAIGHT_LINE_LITERAL);
+            List<Field> literalFields = getSyntheticFields(loopClass);
+            assertEquals(cachedLiterals.size(), literalFields.size(), "Each cached literal should get one field");
+            for (Field field : literalFields) {
+                assertNull(field.get(null), "Cached literal should be decoded lazily");
+            }
+
+            for (int count : new int[] { 0, 1, 3 }) {
+                assertEquals(LOOP_LITERAL.repeat(count), loopClass.getMethod("repeat", int.class).invoke(null, count));
+            }
+            Object once = loopClass.getMethod("once").invoke(null);
+            assertEquals(STRAIGHT_LINE_LITERAL, once);
+            if (cacheMode == CacheMode.CALL_SITE) {
+                assertSame(once, loopClass.getMethod("once").invoke(null), "Call site should decode its literal once");
+            }
+            Set<Object> fieldValues = new HashSet<>();
+            for (Field field : literalFields) {
+                fieldValues.add(field.get(null));
+            }
+            assertEquals(cachedLiterals, fieldValues);
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(ChunkStorage.class)
+    @DisplayName("length(), getChars() and appendTo() should decode the plaintext without building a string")
+    void allocationFreeMethodsShouldRoundTrip(ChunkStorage storage) throws Exception {
+        DeobfuscatorOptions options = new DeobfuscatorOptions(
+            0, storage, CacheMode.NONE, false, false, false, PoolFormat.V1, false, false, false);
+        try (ProcessedClasses processed = process(options, STRINGS)) {
+            assertAllocationFreeMethodsDecode(processed, STRINGS);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = { 0, 64 })
+    @DisplayName("Canonical strings should be the same instance for getString() and getStrings()")
+    void canonicalStringsShouldRoundTrip(int cacheSize) throws Exception {
+        DeobfuscatorOptions options = new DeobfuscatorOptions(
+            cacheSize, ChunkStorage.BASE64, CacheMode.NONE, false, true, false, PoolFormat.V1, false, false, false);
+        try (ProcessedClasses processed = ProcessedClasses.process(workDir, Map.of(
+            LITERALS_CLASS, ProcessedClasses.newLiteralClass(LITERALS_CLASS, Opcodes.V1_8, STRINGS),
+            CONSTANTS_CLASS, newConstantsClass(STRINGS, false)
+        ), options)) {
+            Class<?> constantsClass = processed.loadClass(CONSTANTS_CLASS);
+            for (int i = 0; i < STRINGS.length; i++) {
+                String literal = processed.callLiteral(LITERALS_CLASS, i);
+                assertEquals(STRINGS[i], literal);
+                assertSame(literal, processed.callLiteral(LITERALS_CLASS, i));
+                assertSame(literal, constantsClass.getField("CONSTANT_" + i).get(null));
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+        "V1, BASE64, false, false, false",
+        "V2, BASE64, false, false, false",
+        "V2, RAW_STRING, false, false, false",
+        "V2, RESOURCE, false, false, false",
+        "V2, ARRAY, false, false, false",
+        "V1, BASE64, true, false, false",
+        "V2, BASE64, true, false, false",
+        "V1, RESOURCE, true, false, false",
+        "V2, ARRAY, true, false, false",
+        "AES_CTR, BASE64, false, false, false",
+        "AES_CTR, RAW_STRING, false, false, false",
+        "AES_CTR, RESOURCE, false, false, false",
+        "AES_CTR, ARRAY, false, false, false",
+        "AES_CTR, BASE64, true, false, false",
+        "V1, BASE64, false, true, false",
+        "V2, BASE64, false, true, false",
+        "AES_CTR, BASE64, false, true, false",
+        "V1, RESOURCE, false, true, false",
+        "V2, RESOURCE, false, true, false",
+        "AES_CTR, RESOURCE, false, true, false",
+        "V2, ARRAY, true, true, false",
+        "V1, BASE64, false, false, true",
+        "V2, RAW_STRING, false, false, true",
+        "AES_CTR, ARRAY, false, false, true",
+        "V1, BASE64, false, true, true",
+        "V2, ARRAY, false, true, true",
+        "AES_CTR, BASE64, false, true, true",
+        "V2, BASE64, true, true, true",
+        "V2, RESOURCE, false, false, true"
+    })
+    @DisplayName("Pools should decode to the plaintext through every method, again after they are trimmed")
+    void poolShouldRoundTrip(PoolFormat format, ChunkStorage storage, boolean decryptChunksOnce, boolean packLatin1,
+                             boolean compressChunks) throws Exception {
+        DeobfuscatorOptions options = new DeobfuscatorOptions(
+            0, storage, CacheMode.NONE, false, false, false, format, decryptChunksOnce, packLatin1, compressChunks);
+        try (ProcessedClasses processed = ProcessedClasses.process(workDir, Map.of(
+            LITERALS_CLASS, ProcessedClasses.newLiteralClass(LITERALS_CLASS, Opcodes.V1_8, STRINGS),
+            CONSTANTS_CLASS, newConstantsClass(STRINGS, false)
+        ), options)) {
+            boolean inflatesChunks = getCalls(processed.getClassBytes(DEOBFUSCATOR_CLASS), DEOBFUSCATOR_HELPER_CLASS)
+                .contains("inflateChunk");
+            assertEquals(compressChunks && storage != ChunkStorage.RESOURCE, inflatesChunks);
+
+            assertLiteralsDecode(processed, STRINGS);
+            assertAllocationFreeMethodsDecode(processed, STRINGS);
+            Class<?> constantsClass = processed.loadClass(CONSTANTS_CLASS);
+            for (int i = 0; i < STRINGS.length; i++) {
+                assertEquals(STRINGS[i], constantsClass.getField("CONSTANT_" + i).get(null));
+            }
+
+            trimMemory(processed);
+            assertLiteralsDecode(processed, STRINGS);
+            assertAllocationFreeMethodsDecode(processed, STRINGS);
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = PoolFormat.class, names = { "V1", "V2" })
+    @DisplayName("Shared keystream should grow for a longer string and keep decoding shorter ones")
+    void keystreamShouldGrowForLongerStrings(PoolFormat format) throws Exception {
+        String[] literals = { "Short before", "Long: " + "k".repeat(20000), "Short after" };
+        DeobfuscatorOptions options = new DeobfuscatorOptions(
+            0, ChunkStorage.BASE64, CacheMode.NONE, false, false, false, format, false, false, false);
+        try (ProcessedClasses processed = process(options, literals)) {
+            Field keystreamField = processed.loadClass(DEOBFUSCATOR_CLASS).getDeclaredField("keystream");
+            keystreamField.setAccessible(true);
+            KeystreamTable keystream = (KeystreamTable) keystreamField.get(null);
+
+            assertEquals(literals[0], processed.callLiteral(LITERALS_CLASS, 0));
+            int shortKeys = keystream.getKeys().length;
+            assertTrue(shortKeys <= literals[1].length(), "Short strings should not compute the keys of the long one");
+            assertEquals(literals[1], processed.callLiteral(LITERALS_CLASS, 1));
+            assertTrue(keystream.getKeys().length > literals[1].length(), "Long string should grow the keystream");
+            assertEquals(literals[2], processed.callLiteral(LITERALS_CLASS, 2));
+            assertEquals(literals[0], processed.callLiteral(LITERALS_CLASS, 0));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = { false, true })
+    @DisplayName("Chunks decrypted once should be held as plaintext, encrypted ones as loaded")
+    void decryptedChunksShouldHoldPlaintext(boolean decryptChunksOnce) throws Exception {
+        String literal = "Held in the chunk table";
+        DeobfuscatorOptions options = new DeobfuscatorOptions(
+            0, ChunkStorage.BASE64, CacheMode.NONE, false, false, false, PoolFormat.V1, decryptChunksOnce, false, false);
+        try (ProcessedClasses processed = process(options, literal)) {
+            assertEquals(literal, processed.callLiteral(LITERALS_CLASS, 0));
+
+            Field chunksField = processed.loadClass(DEOBFUSCATOR_CLASS).getDeclaredField("chunks");
+            chunksField.setAccessible(true);
+            Field slotsField = ChunkTable.class.getDeclaredField("slots");
+            slotsField.setAccessible(true);
+            AtomicReferenceArray<?> slots = (AtomicReferenceArray<?>) slotsField.get(chunksField.get(null));
+            char[] chunk = (char[]) slots.get(0);
+            assertEquals(decryptChunksOnce, new String(chunk).contains(literal));
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = PoolFormat.class, names = { "V1", "V2" })
+    @DisplayName("Latin-1 decoding should widen at the first unit past Latin-1")
+    void latin1DecodeShouldWiden(PoolFormat format) throws Exception {
+        String[] literals = { "", "ASCII only", "Latin-1: café ÿ", "中 at the start", "at the end: 中",
+            "in the middle: 😀 and more", "x".repeat(20000) + "€", "ÿ" };
+        DeobfuscatorOptions options = new DeobfuscatorOptions(
+            0, ChunkStorage.BASE64, CacheMode.NONE, false, false, false, format, false, false, false);
+        try (ProcessedClasses processed = process(options, literals)) {
+            assertLiteralsDecode(processed, literals);
+        }
+    }
+
+    private ProcessedClasses process(DeobfuscatorOptions options, String... literals) throws Exception {
+        return ProcessedClasses.process(workDir, Map.of(
+            LITERALS_CLASS, ProcessedClasses.newLiteralClass(LITERALS_CLASS, Opcodes.V1_8, literals)
+        ), options);
+    }
+
+    // Calls every literal twice, so both a cold and a warm lookup are checked
+    private static void assertLiteralsDecode(ProcessedClasses processed, String... literals) throws Exception {
+        for (int i = 0; i < literals.length; i++) {
+            assertEquals(literals[i], processed.callLiteral(LITERALS_CLASS, i));
+            assertEquals(literals[i], processed.callLiteral(LITERALS_CLASS, i));
+        }
+    }
+
+    private static void assertAllocationFreeMethodsDecode(ProcessedClasses processed, String... literals)
+        throws Exception {
+        long[] ids = processed.getStringIds(LITERALS_CLASS, literals.length);
+        Class<?> deobfuscator = processed.loadClass(DEOBFUSCATOR_CLASS);
+        Method length = deobfuscator.getMethod("length", long.class);
+        Method getChars = deobfuscator.getMethod("getChars", long.class, char[].class, int.class);
+        Method appendTo = deobfuscator.getMethod("appendTo", long.class, Appendable.class);
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < literals.length; i++) {
+            long id = ids[i];
+            String literal = literals[i];
+            assertEquals(literal.length(), length.invoke(null, id));
+
+            char[] chars = new char[literal.length() + 2];
+            assertEquals(literal.length(), getChars.invoke(null, id, chars, 1));
+            assertEquals(literal, new String(chars, 1, literal.length()));
+            assertEquals('\0', chars[0], "getChars() should not write before the offset");
+            assertEquals('\0', chars[chars.length - 1], "getChars() should not write past the string");
+
+            builder.setLength(0);
+            appendTo.invoke(null, id, builder);
+            assertEquals(literal, builder.toString());
+
+            if (!literal.isEmpty()) {
+                char[] tooSmall = new char[literal.length() - 1];
+                InvocationTargetException exception = assertThrows(
+                    InvocationTargetException.class, () -> getChars.invoke(null, id, tooSmall, 0));
+                assertInstanceOf(IndexOutOfBoundsException.class, exception.getCause());
+                assertArrayEquals(new char[tooSmall.length], tooSmall, "Nothing should be written to a small buffer");
+            }
+        }
+    }
+
+    private static void trimMemory(ProcessedClasses processed) throws Exception {
+        processed.loadClass(DEOBFUSCATOR_CLASS)
+            .getMethod("trimMemory", int.class)
+            .invoke(null, ChunkTable.TRIM_MEMORY_RUNNING_LOW);
+    }
+
+    // A class with a public static final String field per constant, CONSTANT_0 holding the first
+    private static byte[] newConstantsClass(String[] constants, boolean hasStaticInitializer) {
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, CONSTANTS_CLASS, null, "java/lang/Object", null);
+        int constantAccess = Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL;
+        for (int i = 0; i < constants.length; i++) {
+            writer.visitField(constantAccess, "CONSTANT_" + i, STRING_DESCRIPTOR, null, constants[i]).visitEnd();
+        }
+        if (hasStaticInitializer) {
+            int fieldAccess = Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC;
+            writer.visitField(fieldAccess, "assigned", STRING_DESCRIPTOR, null, null).visitEnd();
+            MethodVisitor method = writer.visitMethod(Opcodes.ACC_STATIC, "<clinit>", "()V", null, null);
+            method.visitCode();
+            method.visitLdcInsn(STATIC_INITIALIZER_LITERAL);
+            method.visitFieldInsn(Opcodes.PUTSTATIC, CONSTANTS_CLASS, "assigned", STRING_DESCRIPTOR);
+            method.visitInsn(Opcodes.RETURN);
+            method.visitMaxs(0, 0);
+            method.visitEnd();
+        }
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    private static List<Object> getConstantValues(byte[] classBytes) {
+        List<Object> values = new ArrayList<>();
+        new ClassReader(classBytes).accept(new ClassVisitor(Opcodes.ASM9) {
+            @Override
+            public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+                if (value != null) {
+                    values.add(value);
+                }
+                return null;
+            }
+        }, 0);
+        return values;
+    }
+
+    private static List<String> getStaticInitializerCalls(byte[] classBytes) {
+        List<String> calls = new ArrayList<>();
+        new ClassReader(classBytes).accept(new ClassVisitor(Opcodes.ASM9) {
+            @Override
+            public MethodVisitor visitMethod(
+                int access, String name, String descriptor, String signature, String[] exceptions) {
+                if (!name.equals("<clinit>")) {
+                    return null;
+                }
+                return new MethodVisitor(Opcodes.ASM9) {
+                    @Override
+                    public void visitMethodInsn(
+                        int opcode, String owner, String name, String descriptor, boolean isInterface) {
+                        if (owner.equals(DEOBFUSCATOR_CLASS)) {
+                            calls.add(name);
+                        }
+                    }
+                };
+            }
+        }, 0);
+        return calls;
+    }
+
+    private static Set<String> getCalls(byte[] classBytes, String owner) {
+        Set<String> calls = new HashSet<>();
+        new ClassReader(classBytes).accept(new ClassVisitor(Opcodes.ASM9) {
+            @Override
+            public MethodVisitor visitMethod(
+                int access, String name, String descriptor, String signature, String[] exceptions) {
+                return new MethodVisitor(Opcodes.ASM9) {
+                    @Override
+                    public void visitMethodInsn(
+                        int opcode, String methodOwner, String name, String descriptor, boolean isInterface) {
+                        if (methodOwner.equals(owner)) {
+                            calls.add(name);
+                        }
+                    }
+                };
+            }
+        }, 0);
+        return calls;
+    }
+
+    // A class with repeat(count) appending a literal in a loop, and once() returning another literal
+    private static byte[] newLoopClass() {
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+        writer.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, LOOP_CLASS, null, "java/lang/Object", null);
+
+        MethodVisitor repeat = writer.visitMethod(
+            Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "repeat", "(I)Ljava/lang/String;", null, null);
+        repeat.visitCode();
+        // StringBuilder builder = new StringBuilder(); for (int i = 0; i < count; i++) builder.append(LITERAL);
+        repeat.visitTypeInsn(Opcodes.NEW, "java/lang/StringBuilder");
+        repeat.visitInsn(Opcodes.DUP);
+        repeat.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/StringBuilder", "<init>", "()V", false);
+        repeat.visitVarInsn(Opcodes.ASTORE, 1);
+        repeat.visitInsn(Opcodes.ICONST_0);
+        repeat.visitVarInsn(Opcodes.ISTORE, 2);
+        Label condition = new Label();
+        Label body = new Label();
+        repeat.visitJumpInsn(Opcodes.GOTO, condition);
+        repeat.visitLabel(body);
+        repeat.visitVarInsn(Opcodes.ALOAD, 1);
+        repeat.visitLdcInsn(LOOP_LITERAL);
+        repeat.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/lang/StringBuilder", "append",
+            "(Ljava/lang/String;)Ljava/lang/StringBuilder;", false);
+        repeat.visitInsn(Opcodes.POP);
+        repeat.visitIincInsn(2, 1);
+        repeat.visitLabel(condition);
+        repeat.visitVarInsn(Opcodes.ILOAD, 2);
+        repeat.visitVarInsn(Opcodes.ILOAD, 0);
+        repeat.visitJumpInsn(Opcodes.IF_ICMPLT, body);
+        // return builder.toString();
+        repeat.visitVarInsn(Opcodes.ALOAD, 1);
+        repeat.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/lang/StringBuilder", "toString", "()Ljava/lang/String;", false);
+        repeat.visitInsn(Opcodes.ARETURN);
+        repeat.visitMaxs(0, 0);
+        repeat.visitEnd();
+
+        MethodVisitor once = writer.visitMethod(
+            Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "once", "()Ljava/lang/String;", null, null);
+        once.visitCode();
+        once.visitLdcInsn(STRAIGHT_LINE_LITERAL);
+        once.visitInsn(Opcodes.ARETURN);
+        once.visitMaxs(0, 0);
+        once.visitEnd();
+
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    private static List<Field> getSyntheticFields(Class<?> type) {
+        List<Field> fields = new ArrayList<>();
+        for (Field field : type.getDeclaredFields()) {
+            if (field.isSynthetic()) {
+                field.setAccessible(true);
+                fields.add(field);
+            }
+        }
+        return fields;
+    }
+}
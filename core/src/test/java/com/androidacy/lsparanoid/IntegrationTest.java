@@ -1,9 +1,11 @@
 package com.androidacy.lsparanoid;
 
 import com.androidacy.lsparanoid.processor.StringRegistryImpl;
+import com.androidacy.lsparanoid.processor.model.PoolFormat;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
 import org.junit.jupiter.params.provider.ValueSource;
 
 import java.io.ByteArrayOutputStream;
@@ -329,4 +331,169 @@ class IntegrationTest {
             }
         }
     }
+
+    @Test
+    @DisplayName("getIndex() should return pool positions in registration order")
+    void getIndexShouldReturnPoolPositions() {
+        try (StringRegistryImpl registry = new StringRegistryImpl(31337)) {
+            long first = registry.registerString("first");
+            long second = registry.registerString("second");
+            long third = registry.registerString("");
+
+            assertEquals(0L, registry.getIndex(first));
+            assertEquals(6L, registry.getIndex(second), "Second string should follow length + chars of first");
+            assertEquals(13L, registry.getIndex(third));
+            assertEquals(registry.getIndex(first), registry.getIndex(registry.registerString("first")),
+                "Deduplicated string should keep its position");
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "a", "abc", "abcd", "Hello, World!", "Unicode: 世界 🌍 Привет"})
+    @DisplayName("Round-trip: v2 pool format")
+    void roundTripPoolFormatV2(String original) {
+        try (StringRegistryImpl registry = new StringRegistryImpl(4242, PoolFormat.V2)) {
+            long padding = registry.registerString("padding");
+            long id = registry.registerString(original);
+
+            char[][] chunks = loadCharChunks(registry);
+            assertEquals("padding", DeobfuscatorHelper.decodeV2(padding, chunks));
+            assertEquals(original, DeobfuscatorHelper.decodeV2(id, chunks), "Round-trip should preserve string");
+        }
+    }
+
+    @Test
+    @DisplayName("Round-trip: v2 pool format across chunk boundaries")
+    void roundTripPoolFormatV2AcrossChunks() {
+        List<String> originals = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            originals.add("String number " + i + " with some padding: " + "x".repeat(i % 37));
+        }
+
+        try (StringRegistryImpl registry = new StringRegistryImpl(777, PoolFormat.V2)) {
+            List<Long> ids = new ArrayList<>();
+            for (String original : originals) {
+                ids.add(registry.registerString(original));
+            }
+
+            char[][] chunks = loadCharChunks(registry);
+            assertTrue(chunks.length > 1, "Pool should span several chunks");
+            for (int i = 0; i < originals.size(); i++) {
+                assertEquals(originals.get(i), DeobfuscatorHelper.decodeV2(ids.get(i), chunks));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("v1 and v2 pools should assign the same IDs but encrypt differently")
+    void poolFormatsShouldShareIds() {
+        try (StringRegistryImpl v1 = new StringRegistryImpl(31337, PoolFormat.V1);
+             StringRegistryImpl v2 = new StringRegistryImpl(31337, PoolFormat.V2)) {
+            for (String string : new String[] {"first", "second", ""}) {
+                assertEquals(v1.registerString(string), v2.registerString(string));
+            }
+            assertEquals(v1.getTotalLength(), v2.getTotalLength());
+            assertFalse(java.util.Arrays.equals(v1.getDataAsByteArray(), v2.getDataAsByteArray()));
+        }
+    }
+
+    @Test
+    @DisplayName("v1 and v2 pools should decode to the same strings")
+    void poolFormatsShouldDecodeAlike() {
+        String[] originals = new String[256];
+        for (int i = 0; i < originals.length; i++) {
+            originals[i] = "Pool string " + i + " of a typical UI label length";
+        }
+
+        try (StringRegistryImpl v1 = new StringRegistryImpl(2024, PoolFormat.V1);
+             StringRegistryImpl v2 = new StringRegistryImpl(2024, PoolFormat.V2)) {
+            long[] ids = new long[originals.length];
+            for (int i = 0; i < originals.length; i++) {
+                ids[i] = v1.registerString(originals[i]);
+                v2.registerString(originals[i]);
+            }
+            char[][] v1Chunks = loadCharChunks(v1);
+            char[][] v2Chunks = loadCharChunks(v2);
+
+            for (int i = 0; i < ids.length; i++) {
+                assertEquals(originals[i], DeobfuscatorHelper.decode(ids[i], v1Chunks));
+                assertEquals(originals[i], DeobfuscatorHelper.decodeV2(ids[i], v2Chunks));
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = PoolFormat.class, names = {"V1", "V2"})
+    @DisplayName("Round-trip: packed Latin-1 strings next to UTF-16 ones across chunk boundaries")
+    void roundTripPackedLatin1(PoolFormat format) {
+        List<String> originals = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            originals.add("String number " + i + " with some padding: " + "x".repeat(i % 37));
+            originals.add(i % 2 == 0 ? "Latin-1 " + i + ": café ÿ" : "UTF-16 " + i + ": 中文 😀");
+        }
+        originals.add("");
+        originals.add("a");
+        originals.add("z".repeat(0x7FFF));
+
+        try (StringRegistryImpl registry = new StringRegistryImpl(777, format, true)) {
+            List<Long> ids = new ArrayList<>();
+            for (String original : originals) {
+                ids.add(registry.registerString(original));
+            }
+
+            char[][] chunks = loadCharChunks(registry);
+            KeystreamTable keystream = new KeystreamTable(777, format == PoolFormat.V2, true);
+            for (int i = 0; i < originals.size(); i++) {
+                assertEquals(originals.get(i), DeobfuscatorHelper.decode(ids.get(i), chunks, keystream));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Packed Latin-1 pools should take about half the units for ASCII strings")
+    void packedLatin1ShouldHalveAsciiPool() {
+        try (StringRegistryImpl unpacked = new StringRegistryImpl(31337);
+             StringRegistryImpl packed = new StringRegistryImpl(31337, PoolFormat.V1, true)) {
+            for (int i = 0; i < 100; i++) {
+                String label = "Typical ASCII UI label number " + i;
+                unpacked.registerString(label);
+                packed.registerString(label);
+            }
+            assertTrue(packed.getTotalLength() * 10 < unpacked.getTotalLength() * 6,
+                "Packed pool has " + packed.getTotalLength() + " units, unpacked " + unpacked.getTotalLength());
+        }
+    }
+
+    @Test
+    @DisplayName("Packed Latin-1 pools should reject strings longer than 32767 characters")
+    void packedLatin1ShouldRejectLongStrings() {
+        try (StringRegistryImpl registry = new StringRegistryImpl(1, PoolFormat.V1, true)) {
+            assertThrows(IllegalArgumentException.class, () -> registry.registerString("x".repeat(0x8000)));
+        }
+    }
+
+    @Test
+    @DisplayName("Unpacked pools should decode through the keystream table like the v1 decoder")
+    void keystreamDecodeShouldMatchV1() {
+        try (StringRegistryImpl registry = new StringRegistryImpl(4242)) {
+            long[] ids = new long[100];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = registry.registerString("String " + i + " – ünïcödé 中");
+            }
+            char[][] chunks = loadCharChunks(registry);
+            KeystreamTable keystream = new KeystreamTable(4242);
+            for (long id : ids) {
+                assertEquals(DeobfuscatorHelper.decode(id, chunks), DeobfuscatorHelper.decode(id, chunks, keystream));
+            }
+        }
+    }
+
+    private static char[][] loadCharChunks(StringRegistryImpl registry) {
+        String[] chunks = DeobfuscatorHelper.loadChunksFromByteArray(registry.getDataAsByteArray(), registry.getTotalLength());
+        char[][] charChunks = new char[chunks.length][];
+        for (int i = 0; i < chunks.length; i++) {
+            charChunks[i] = chunks[i].toCharArray();
+        }
+        return charChunks;
+    }
 }
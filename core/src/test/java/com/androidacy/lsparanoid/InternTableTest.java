@@ -0,0 +1,100 @@
+package com.androidacy.lsparanoid;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Timeout;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for InternTable.
+ * Tests the weak ID-keyed table that canonicalizes strings of generated deobfuscators.
+ */
+class InternTableTest {
+
+    @Test
+    @DisplayName("get() should return null for unknown ID")
+    void getShouldReturnNullForUnknownId() {
+        assertNull(new InternTable().get(42L));
+    }
+
+    @Test
+    @DisplayName("intern() should return the first instance for equal strings with the same ID")
+    void internShouldReturnFirstInstance() {
+        InternTable table = new InternTable();
+        String first = new String("canonical");
+        String second = new String("canonical");
+
+        assertSame(first, table.intern(42L, first));
+        assertSame(first, table.intern(42L, second), "Reachable instance should stay canonical");
+        assertSame(first, table.get(42L));
+    }
+
+    @Test
+    @DisplayName("intern() should keep different IDs apart")
+    void internShouldKeepIdsApart() {
+        InternTable table = new InternTable();
+        String first = table.intern(1L, new String("value"));
+        String second = table.intern(2L, new String("value"));
+        assertNotSame(first, second);
+        assertEquals(2, table.getSize());
+    }
+
+    @Test
+    @Timeout(30)
+    @DisplayName("Unreachable strings should be collected and replaced")
+    void unreachableStringsShouldBeCollected() throws InterruptedException {
+        InternTable table = new InternTable();
+        WeakReference<String> collected = new WeakReference<>(table.intern(42L, new String("transient")));
+
+        while (collected.get() != null) {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        assertNull(table.get(42L), "Collected string should not be returned");
+        String replacement = new String("transient");
+        assertSame(replacement, table.intern(42L, replacement), "New instance should become canonical");
+        assertEquals(1, table.getSize(), "Stale entry should be replaced");
+    }
+
+    @Test
+    @Timeout(60)
+    @DisplayName("STRESS: Concurrent intern() should agree on one instance per ID")
+    void concurrentInternShouldAgree() throws Exception {
+        InternTable table = new InternTable();
+        int threads = 8;
+        int ids = 1000;
+        String[][] results = new String[threads][ids];
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            Future<?>[] futures = new Future<?>[threads];
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures[t] = executor.submit(() -> {
+                    start.await();
+                    for (int id = 0; id < ids; id++) {
+                        results[thread][id] = table.intern(id, new String("value " + id));
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        for (int id = 0; id < ids; id++) {
+            for (int t = 1; t < threads; t++) {
+                assertSame(results[0][id], results[t][id], "All threads should get the same instance");
+            }
+        }
+    }
+}
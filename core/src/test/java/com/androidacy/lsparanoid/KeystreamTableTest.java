@@ -0,0 +1,227 @@
+package com.androidacy.lsparanoid;
+
+import com.androidacy.lsparanoid.processor.StringRegistryImpl;
+import com.androidacy.lsparanoid.processor.model.PoolFormat;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for KeystreamTable.
+ * Tests the per-seed index mask and keystream against pools written by StringRegistry.
+ */
+class KeystreamTableTest {
+
+    @ParameterizedTest
+    @EnumSource(PoolFormat.class)
+    @DisplayName("Index mask should map IDs to their pool positions")
+    void indexMaskShouldMatchRegistry(PoolFormat format) {
+        try (StringRegistryImpl registry = new StringRegistryImpl(12345, format)) {
+            KeystreamTable table = new KeystreamTable(12345, format == PoolFormat.V2);
+            for (int i = 0; i < 100; i++) {
+                long id = registry.registerString("string " + i);
+                assertEquals(registry.getIndex(id), (int) ((id >>> 32) ^ table.getIndexMask()));
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = PoolFormat.class, names = { "V1", "V2" })
+    @DisplayName("Keys should decode strings of the pool, growing for long strings")
+    void keysShouldDecodePool(PoolFormat format) {
+        String[] originals = {"", "short", "Unicode: 中文 😀", "x".repeat(1000), "y".repeat(65535)};
+
+        try (StringRegistryImpl registry = new StringRegistryImpl(-42, format)) {
+            long[] ids = new long[originals.length];
+            for (int i = 0; i < originals.length; i++) {
+                ids[i] = registry.registerString(originals[i]);
+            }
+            char[][] chunks = chunksOf(DeobfuscatorHelper.loadChunkFromByteArray(
+                registry.getDataAsByteArray(), (int) registry.getTotalLength()));
+
+            KeystreamTable table = new KeystreamTable(-42, format == PoolFormat.V2);
+            for (int i = 0; i < originals.length; i++) {
+                assertEquals(originals[i], DeobfuscatorHelper.decode(ids[i], chunks, table));
+            }
+            assertEquals(KeystreamTable.MAX_LENGTH, table.getKeys().length, "Longest string should grow the table to its limit");
+        }
+    }
+
+    @Test
+    @DisplayName("Keys should match DeobfuscatorHelper across chunk boundaries")
+    void keysShouldMatchHelper() {
+        try (StringRegistryImpl registry = new StringRegistryImpl(777)) {
+            long[] ids = new long[400];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = registry.registerString("String number " + i + " with some padding: " + "x".repeat(i % 37));
+            }
+            char[][] chunks = chunksOf(DeobfuscatorHelper.loadChunkFromByteArray(
+                registry.getDataAsByteArray(), (int) registry.getTotalLength()));
+
+            KeystreamTable table = new KeystreamTable(777);
+            for (long id : ids) {
+                assertEquals(DeobfuscatorHelper.decode(id, chunks), DeobfuscatorHelper.decode(id, chunks, table));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("extend() should keep the keys computed before")
+    void extendShouldKeepPrefix() {
+        KeystreamTable table = new KeystreamTable(99, true);
+        char[] before = table.getKeys();
+
+        char[] after = table.extend(before.length + 1);
+        assertTrue(after.length > before.length);
+        assertSame(after, table.getKeys());
+        for (int i = 0; i < before.length; i++) {
+            assertEquals(before[i], after[i], "Key " + i + " should not change");
+        }
+        assertSame(after, table.extend(1), "Covered length should not grow the table");
+    }
+
+    @Test
+    @DisplayName("extend() should reject more keys than the longest string has units")
+    void extendShouldRejectTooManyKeys() {
+        KeystreamTable table = new KeystreamTable(99);
+        assertThrows(IllegalArgumentException.class, () -> table.extend(KeystreamTable.MAX_LENGTH + 1));
+    }
+
+    @Test
+    @Timeout(60)
+    @DisplayName("STRESS: Concurrent extend() should agree on the keys")
+    void concurrentExtendShouldAgree() throws Exception {
+        KeystreamTable table = new KeystreamTable(2024);
+        KeystreamTable reference = new KeystreamTable(2024);
+        char[] expected = reference.extend(KeystreamTable.MAX_LENGTH);
+
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            Future<?>[] futures = new Future<?>[threads];
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures[t] = executor.submit(() -> {
+                    start.await();
+                    for (int length = 1 + thread; length <= KeystreamTable.MAX_LENGTH; length += 997) {
+                        char[] keys = table.extend(length);
+                        for (int i = 0; i < length; i++) {
+                            if (keys[i] != expected[i]) {
+                                throw new AssertionError("Key " + i + " differs");
+                            }
+                        }
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = PoolFormat.class, names = { "V1", "V2" })
+    @DisplayName("decryptChunk() should decrypt each chunk on its own, strings spanning chunks included")
+    void decryptChunkShouldDecryptEachChunk(PoolFormat format) {
+        List<String> originals = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            originals.add("String number " + i + " with some padding: " + "x".repeat(i % 37));
+        }
+        originals.add("Spans several chunks: " + "z".repeat(3 * DeobfuscatorHelper.MAX_CHUNK_LENGTH));
+        originals.add("After the long one");
+
+        try (StringRegistryImpl registry = new StringRegistryImpl(4242, format)) {
+            long[] ids = new long[originals.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = registry.registerString(originals.get(i));
+            }
+            char[][] chunks = chunksOf(DeobfuscatorHelper.loadChunkFromByteArray(
+                registry.getDataAsByteArray(), (int) registry.getTotalLength()));
+            int[] boundaries = registry.getChunkBoundaries();
+            assertEquals(chunks.length * 2, boundaries.length);
+
+            // Decrypt in reverse order, so no chunk relies on its predecessor
+            KeystreamTable table = new KeystreamTable(4242, format == PoolFormat.V2);
+            for (int i = chunks.length - 1; i >= 0; i--) {
+                assertSame(chunks[i], table.decryptChunk(chunks[i], boundaries[i * 2], boundaries[i * 2 + 1]));
+            }
+            char[] plaintext = new char[(int) registry.getTotalLength()];
+            for (int i = 0; i < chunks.length; i++) {
+                System.arraycopy(chunks[i], 0, plaintext, i * DeobfuscatorHelper.MAX_CHUNK_LENGTH, chunks[i].length);
+            }
+
+            for (int i = 0; i < ids.length; i++) {
+                int index = (int) ((ids[i] >>> 32) ^ table.getIndexMask());
+                assertEquals(originals.get(i), new String(plaintext, index + 1, plaintext[index]));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("decryptChunk() should walk packed Latin-1 strings by their unit count")
+    void decryptChunkShouldWalkPackedStrings() {
+        List<String> originals = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            originals.add(i % 3 == 0 ? "UTF-16 " + i + ": 中文" : "Latin-1 " + i + ": " + "é".repeat(i % 7));
+        }
+
+        try (StringRegistryImpl registry = new StringRegistryImpl(4242, PoolFormat.V2, true)) {
+            long[] ids = new long[originals.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = registry.registerString(originals.get(i));
+            }
+            char[][] chunks = chunksOf(DeobfuscatorHelper.loadChunkFromByteArray(
+                registry.getDataAsByteArray(), (int) registry.getTotalLength()));
+            int[] boundaries = registry.getChunkBoundaries();
+            assertTrue(chunks.length > 1, "Pool should span several chunks");
+
+            KeystreamTable table = new KeystreamTable(4242, true, true);
+            for (int i = chunks.length - 1; i >= 0; i--) {
+                table.decryptChunk(chunks[i], boundaries[i * 2], boundaries[i * 2 + 1]);
+            }
+            char[] plaintext = new char[(int) registry.getTotalLength()];
+            for (int i = 0; i < chunks.length; i++) {
+                System.arraycopy(chunks[i], 0, plaintext, i * DeobfuscatorHelper.MAX_CHUNK_LENGTH, chunks[i].length);
+            }
+
+            for (int i = 0; i < ids.length; i++) {
+                int index = (int) ((ids[i] >>> 32) ^ table.getIndexMask());
+                int header = plaintext[index];
+                int length = header >>> 1;
+                StringBuilder decoded = new StringBuilder();
+                for (int j = 0; j < length; j++) {
+                    if ((header & 1) != 0) {
+                        char unit = plaintext[index + 1 + j / 2];
+                        decoded.append((char) ((j & 1) == 0 ? unit >>> 8 : unit & 0xff));
+                    } else {
+                        decoded.append(plaintext[index + 1 + j]);
+                    }
+                }
+                assertEquals(originals.get(i), decoded.toString());
+            }
+        }
+    }
+
+    private static char[][] chunksOf(char[] pool) {
+        int chunkCount = (pool.length + DeobfuscatorHelper.MAX_CHUNK_LENGTH - 1) / DeobfuscatorHelper.MAX_CHUNK_LENGTH;
+        char[][] chunks = new char[chunkCount][];
+        for (int i = 0; i < chunkCount; i++) {
+            int from = i * DeobfuscatorHelper.MAX_CHUNK_LENGTH;
+            chunks[i] = java.util.Arrays.copyOfRange(pool, from, Math.min(from + DeobfuscatorHelper.MAX_CHUNK_LENGTH, pool.length));
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,98 @@
+package com.androidacy.lsparanoid;
+
+import com.androidacy.lsparanoid.processor.StringRegistryImpl;
+import com.androidacy.lsparanoid.processor.model.PoolFormat;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for PoolCipher.
+ * Tests AES-CTR pools written by StringRegistry and decrypted chunk by chunk.
+ */
+class PoolCipherTest {
+
+    @Test
+    @DisplayName("Round-trip: AES-CTR pool decrypted chunk by chunk")
+    void roundTripAesCtrPool() {
+        List<String> originals = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            originals.add("String number " + i + " with some padding: " + "x".repeat(i % 37));
+        }
+        originals.add("Unicode: 中文 😀 العربية");
+        originals.add("");
+
+        try (StringRegistryImpl registry = new StringRegistryImpl(4242, PoolFormat.AES_CTR)) {
+            long[] ids = new long[originals.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = registry.registerString(originals.get(i));
+            }
+            char[] pool = DeobfuscatorHelper.loadChunkFromByteArray(
+                registry.getDataAsByteArray(), (int) registry.getTotalLength());
+            int chunkLength = DeobfuscatorHelper.MAX_CHUNK_LENGTH;
+            assertTrue(pool.length > chunkLength, "Pool should span several chunks");
+
+            // Decrypt in reverse order, so no chunk relies on its predecessor
+            PoolCipher cipher = new PoolCipher(4242);
+            for (int from = (pool.length - 1) / chunkLength * chunkLength; from >= 0; from -= chunkLength) {
+                char[] chunk = Arrays.copyOfRange(pool, from, Math.min(from + chunkLength, pool.length));
+                assertSame(chunk, cipher.decryptChunk(chunk, from / chunkLength));
+                System.arraycopy(chunk, 0, pool, from, chunk.length);
+            }
+
+            long mask = new KeystreamTable(4242).getIndexMask();
+            for (int i = 0; i < ids.length; i++) {
+                int index = (int) ((ids[i] >>> 32) ^ mask);
+                assertEquals(originals.get(i), new String(pool, index + 1, pool[index]));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("AES-CTR pool should not contain the plaintext")
+    void aesCtrPoolShouldHidePlaintext() {
+        try (StringRegistryImpl aes = new StringRegistryImpl(31337, PoolFormat.AES_CTR);
+             StringRegistryImpl v1 = new StringRegistryImpl(31337, PoolFormat.V1)) {
+            String secret = "Secret API key: abc123";
+            assertEquals(v1.registerString(secret), aes.registerString(secret), "Formats should share IDs");
+
+            String pool = new String(DeobfuscatorHelper.loadChunkFromByteArray(
+                aes.getDataAsByteArray(), (int) aes.getTotalLength()));
+            assertFalse(pool.contains(secret), "Pool should not contain the plaintext");
+        }
+    }
+
+    @Test
+    @DisplayName("crypt() should be its own inverse and depend on the chunk index")
+    void cryptShouldBeSelfInverse() {
+        PoolCipher cipher = new PoolCipher(99);
+        byte[] plaintext = new byte[1000];
+        for (int i = 0; i < plaintext.length; i++) {
+            plaintext[i] = (byte) i;
+        }
+
+        byte[] first = plaintext.clone();
+        cipher.crypt(first, 0, first.length, 0);
+        byte[] second = plaintext.clone();
+        cipher.crypt(second, 0, second.length, 1);
+        assertFalse(Arrays.equals(first, second), "Chunks should use different counter blocks");
+
+        cipher.crypt(first, 0, first.length, 0);
+        assertArrayEquals(plaintext, first);
+    }
+
+    @Test
+    @DisplayName("Different seeds should derive different keys")
+    void seedsShouldDeriveDifferentKeys() {
+        byte[] first = new byte[64];
+        byte[] second = new byte[64];
+        new PoolCipher(1).crypt(first, 0, first.length, 0);
+        new PoolCipher(2).crypt(second, 0, second.length, 0);
+        assertFalse(Arrays.equals(first, second));
+    }
+}
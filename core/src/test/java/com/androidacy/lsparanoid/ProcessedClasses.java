@@ -0,0 +1,169 @@
+package com.androidacy.lsparanoid;
+
+import com.androidacy.lsparanoid.processor.ParanoidProcessor;
+import com.androidacy.lsparanoid.processor.model.DeobfuscatorOptions;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarInputStream;
+import java.util.jar.JarOutputStream;
+
+/**
+ * Classes run through ParanoidProcessor, for tests of generated code.
+ * Input classes are built with ASM, and the output jar is loaded in its own class loader on top of
+ * the core classes.
+ */
+final class ProcessedClasses implements AutoCloseable {
+    static final int SEED = 20231;
+
+    private final Map<String, byte[]> entries;
+    private final URLClassLoader classLoader;
+
+    private ProcessedClasses(Map<String, byte[]> entries, URLClassLoader classLoader) {
+        this.entries = entries;
+        this.classLoader = classLoader;
+    }
+
+    /**
+     * Run the processor over the given classes, obfuscating all of them.
+     *
+     * @param workDir an empty directory for inputs and outputs
+     * @param classes the class file contents by internal name
+     * @param options the deobfuscator options
+     */
+    static ProcessedClasses process(Path workDir, Map<String, byte[]> classes, DeobfuscatorOptions options)
+        throws IOException {
+        Path inputs = Files.createDirectories(workDir.resolve("inputs"));
+        for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+            Path file = inputs.resolve(entry.getKey() + ".class");
+            Files.createDirectories(file.getParent());
+            Files.write(file, entry.getValue());
+        }
+
+        // Frames of generated code fall back to Object for types missing from the classpath
+        Path bootClasspath = workDir.resolve("boot");
+        Files.createDirectories(bootClasspath.resolve("java/lang"));
+        try (InputStream object = Object.class.getResourceAsStream("Object.class")) {
+            Files.copy(object, bootClasspath.resolve("java/lang/Object.class"));
+        }
+
+        Path output = workDir.resolve("output.jar");
+        Path resources = Files.createDirectories(workDir.resolve("resources"));
+        try (OutputStream fileOut = Files.newOutputStream(output);
+             JarOutputStream jarOutput = new JarOutputStream(fileOut)) {
+            new ParanoidProcessor(
+                SEED,
+                Set.of(bootClasspath),
+                List.of(inputs),
+                jarOutput,
+                Opcodes.ASM9,
+                "test",
+                className -> true,
+                options,
+                resources,
+                null
+            ).process();
+        }
+
+        Map<String, byte[]> entries = new HashMap<>();
+        try (JarInputStream jarInput = new JarInputStream(Files.newInputStream(output))) {
+            for (JarEntry entry = jarInput.getNextJarEntry(); entry != null; entry = jarInput.getNextJarEntry()) {
+                entries.put(entry.getName(), jarInput.readAllBytes());
+            }
+        }
+        URLClassLoader classLoader = new URLClassLoader(
+            new URL[] { output.toUri().toURL(), resources.toUri().toURL() },
+            ProcessedClasses.class.getClassLoader()
+        );
+        return new ProcessedClasses(entries, classLoader);
+    }
+
+    /**
+     * Build a public class with one static method per literal, {@code literal0()} returning the first.
+     *
+     * @param internalName the class name
+     * @param version the class file version
+     * @param literals the string literals
+     */
+    static byte[] newLiteralClass(String internalName, int version, String... literals) {
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        writer.visit(version, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, internalName, null, "java/lang/Object", null);
+        for (int i = 0; i < literals.length; i++) {
+            MethodVisitor method = writer.visitMethod(
+                Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "literal" + i, "()Ljava/lang/String;", null, null);
+            method.visitCode();
+            method.visitLdcInsn(literals[i]);
+            method.visitInsn(Opcodes.ARETURN);
+            method.visitMaxs(0, 0);
+            method.visitEnd();
+        }
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    byte[] getClassBytes(String internalName) {
+        return entries.get(internalName + ".class");
+    }
+
+    Set<String> getEntryNames() {
+        return entries.keySet();
+    }
+
+    Class<?> loadClass(String internalName) throws ClassNotFoundException {
+        return Class.forName(internalName.replace('/', '.'), true, classLoader);
+    }
+
+    /**
+     * Call {@code literalN()} of a class built by {@link #newLiteralClass}.
+     */
+    String callLiteral(String internalName, int index) throws ReflectiveOperationException {
+        return (String) loadClass(internalName).getMethod("literal" + index).invoke(null);
+    }
+
+    /**
+     * Read the string IDs the {@code literalN()} methods of a class built by {@link #newLiteralClass}
+     * pass to the deobfuscator, {@code ids[0]} for the first one.
+     */
+    long[] getStringIds(String internalName, int count) {
+        long[] ids = new long[count];
+        new ClassReader(getClassBytes(internalName)).accept(new ClassVisitor(Opcodes.ASM9) {
+            @Override
+            public MethodVisitor visitMethod(
+                int access, String name, String descriptor, String signature, String[] exceptions) {
+                if (!name.startsWith("literal")) {
+                    return null;
+                }
+                int index = Integer.parseInt(name.substring("literal".length()));
+                return new MethodVisitor(Opcodes.ASM9) {
+                    @Override
+                    public void visitLdcInsn(Object value) {
+                        if (value instanceof Long) {
+                            ids[index] = (Long) value;
+                        }
+                    }
+                };
+            }
+        }, 0);
+        return ids;
+    }
+
+    @Override
+    public void close() throws IOException {
+        classLoader.close();
+    }
+}
@@ -150,4 +150,16 @@ class RandomHelperTest {
         // Should not crash and should produce some non-zero progression
         assertDoesNotThrow(() -> RandomHelper.next(next));
     }
+
+    @Test
+    @DisplayName("mix64() should produce the SplitMix64 sequence")
+    void mix64ShouldMatchSplitMix64() {
+        // Reference outputs of SplitMix64 seeded with 0
+        long counter = 0L;
+        long[] expected = {0xe220a8397b1dcdafL, 0x6e789e6aa1b965f4L, 0x06c45d188009454fL};
+        for (long value : expected) {
+            counter += RandomHelper.KEYSTREAM_GAMMA;
+            assertEquals(value, RandomHelper.mix64(counter));
+        }
+    }
 }
@@ -18,10 +18,22 @@
 package com.androidacy.lsparanoid.plugin
 
 import com.android.build.api.variant.Variant
+import com.androidacy.lsparanoid.processor.model.CacheMode
+import com.androidacy.lsparanoid.processor.model.ChunkStorage
+import com.androidacy.lsparanoid.processor.model.PoolFormat
 
 open class LSParanoidExtension {
     var seed: Int? = null
     var classFilter: ((className: String) -> Boolean)? = null
     var includeDependencies: Boolean = false
     var variantFilter: (Variant) -> Boolean = { true }
+    var decodeCacheSize: Int = 0
+    var chunkStorage: ChunkStorage = ChunkStorage.BASE64
+    var cacheMode: CacheMode = CacheMode.NONE
+    var canonicalizeStrings: Boolean = false
+    var softChunkReferences: Boolean = false
+    var poolFormat: PoolFormat = PoolFormat.V1
+    var decryptChunksOnce: Boolean = false
+    var packLatin1: Boolean = false
+    var compressChunks: Boolean = false
 }
@@ -21,6 +21,7 @@ import com.android.build.api.artifact.ScopedArtifact
 import com.android.build.api.variant.AndroidComponentsExtension
 import com.android.build.api.variant.ScopedArtifacts.Scope
 import com.android.build.gradle.api.AndroidBasePlugin
+import com.androidacy.lsparanoid.processor.model.ChunkStorage
 import org.gradle.api.Plugin
 import org.gradle.api.Project
 import org.gradle.api.plugins.JavaPlugin
@@ -50,6 +51,20 @@ class LSParanoidPlugin : Plugin<Project> {
                     it.seed.set(extension.seed ?: SecureRandom().nextInt())
                     it.classFilter = extension.classFilter
                     it.projectName.set("${project.rootProject.name}\$${project.path}")
+                    it.decodeCacheSize.set(extension.decodeCacheSize)
+                    it.chunkStorage.set(extension.chunkStorage)
+                    it.cacheMode.set(extension.cacheMode)
+                    it.canonicalizeStrings.set(extension.canonicalizeStrings)
+                    it.softChunkReferences.set(extension.softChunkReferences)
+                    it.poolFormat.set(extension.poolFormat)
+                    it.decryptChunksOnce.set(extension.decryptChunksOnce)
+                    it.packLatin1.set(extension.packLatin1)
+                    it.compressChunks.set(extension.compressChunks)
+                    if (extension.compressChunks && extension.chunkStorage != ChunkStorage.RESOURCE) {
+                        it.compressionReport.set(
+                            project.layout.buildDirectory.file("reports/lsparanoid/${variant.name}/compression.txt")
+                        )
+                    }
                 }
 
                 variant.artifacts.forScope(if (extension.includeDependencies) Scope.ALL else Scope.PROJECT)
@@ -60,6 +75,11 @@ class LSParanoidPlugin : Plugin<Project> {
                         LSParanoidTask::output,
                     )
 
+                // The pool resource has to go through Java resource merging to end up in the APK
+                if (extension.chunkStorage == ChunkStorage.RESOURCE) {
+                    variant.sources.resources?.addGeneratedSourceDirectory(task, LSParanoidTask::resourceOutput)
+                }
+
                 // Connect to compile tasks directly without afterEvaluate
                 task.configure { taskObj ->
                     // Use Android's task providers instead of filtering by name
@@ -18,6 +18,7 @@ package com.androidacy.lsparanoid.plugin
 
 import org.gradle.api.DefaultTask
 import org.gradle.api.file.Directory
+import org.gradle.api.file.DirectoryProperty
 import org.gradle.api.file.FileCollection
 import org.gradle.api.file.RegularFile
 import org.gradle.api.file.RegularFileProperty
@@ -25,6 +26,10 @@ import org.gradle.api.provider.ListProperty
 import org.gradle.api.provider.Property
 import org.gradle.api.tasks.*
 import com.androidacy.lsparanoid.processor.ParanoidProcessor
+import com.androidacy.lsparanoid.processor.model.CacheMode
+import com.androidacy.lsparanoid.processor.model.ChunkStorage
+import com.androidacy.lsparanoid.processor.model.DeobfuscatorOptions
+import com.androidacy.lsparanoid.processor.model.PoolFormat
 import java.io.BufferedOutputStream
 import java.io.FileOutputStream
 import java.util.jar.JarOutputStream
@@ -43,6 +48,14 @@ abstract class LSParanoidTask : DefaultTask() {
     @get:OutputFile
     abstract val output: RegularFileProperty
 
+    @get:OutputDirectory
+    @get:Optional
+    abstract val resourceOutput: DirectoryProperty
+
+    @get:OutputFile
+    @get:Optional
+    abstract val compressionReport: RegularFileProperty
+
     @get:Classpath
     abstract val bootClasspath: ListProperty<RegularFile>
 
@@ -59,9 +72,40 @@ abstract class LSParanoidTask : DefaultTask() {
     @get:Input
     abstract val projectName: Property<String>
 
+    @get:Input
+    abstract val decodeCacheSize: Property<Int>
+
+    @get:Input
+    abstract val chunkStorage: Property<ChunkStorage>
+
+    @get:Input
+    abstract val cacheMode: Property<CacheMode>
+
+    @get:Input
+    abstract val canonicalizeStrings: Property<Boolean>
+
+    @get:Input
+    abstract val softChunkReferences: Property<Boolean>
+
+    @get:Input
+    abstract val poolFormat: Property<PoolFormat>
+
+    @get:Input
+    abstract val decryptChunksOnce: Property<Boolean>
+
+    @get:Input
+    abstract val packLatin1: Property<Boolean>
+
+    @get:Input
+    abstract val compressChunks: Property<Boolean>
+
     @TaskAction
     fun taskAction() {
         val inputs = jars.get() + dirs.get()
+        val resourceDir = resourceOutput.orNull?.asFile?.also {
+            it.deleteRecursively()
+            it.mkdirs()
+        }
         FileOutputStream(output.get().asFile).use { fileOut ->
             BufferedOutputStream(fileOut).use { bufferedOut ->
                 JarOutputStream(bufferedOut).use { jarOutput ->
@@ -72,7 +116,20 @@ abstract class LSParanoidTask : DefaultTask() {
                     .toSet() + classpath.files.map { it.toPath() },
                 output = jarOutput,
                 projectName = projectName.get(),
-                classFilter = classFilter
+                classFilter = classFilter,
+                options = DeobfuscatorOptions(
+                    decodeCacheSize = decodeCacheSize.get(),
+                    chunkStorage = chunkStorage.get(),
+                    cacheMode = cacheMode.get(),
+                    canonicalizeStrings = canonicalizeStrings.get(),
+                    softChunkReferences = softChunkReferences.get(),
+                    poolFormat = poolFormat.get(),
+                    decryptChunksOnce = decryptChunksOnce.get(),
+                    packLatin1 = packLatin1.get(),
+                    compressChunks = compressChunks.get()
+                ),
+                resourceOutput = resourceDir?.toPath(),
+                reportOutput = compressionReport.orNull?.asFile?.toPath()
             ).process()
                 }
             }
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2023 LSPosed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.androidacy.lsparanoid.processor
+
+import com.androidacy.lsparanoid.DeobfuscatorHelper
+import com.androidacy.lsparanoid.KeystreamTable
+import com.androidacy.lsparanoid.PoolCipher
+import com.androidacy.lsparanoid.processor.model.PoolFormat
+import java.io.ByteArrayOutputStream
+import java.nio.ByteBuffer
+import java.util.Locale
+import java.util.zip.Deflater
+
+// Deflates the chunks of a pool for the chunk classes. Encrypted chunks do not compress, so each
+// chunk is decrypted first, deflated on its own, and the deflate stream is sealed with the AES-CTR
+// pool cipher. Every chunk is inflated back through DeobfuscatorHelper.inflateChunk, the runtime
+// path, which checks the round trip and measures the inflation latency for the report.
+class ChunkCompressor(
+  private val stringRegistry: StringRegistry,
+  private val poolFormat: PoolFormat = PoolFormat.V1,
+  private val packLatin1: Boolean = false
+) {
+
+  private val cipher = PoolCipher(stringRegistry.getSeed())
+
+  val chunks: List<CompressedChunk> by lazy {
+    val data = stringRegistry.getDataAsByteArray()
+    val boundaries = stringRegistry.getChunkBoundaries()
+    val keystream = KeystreamTable(stringRegistry.getSeed(), poolFormat == PoolFormat.V2, packLatin1)
+    val bytesPerChunk = DeobfuscatorHelper.MAX_CHUNK_LENGTH * 2
+    List(stringRegistry.getChunkCount()) { chunkIndex ->
+      val plaintext = data.copyOfRange(chunkIndex * bytesPerChunk, minOf((chunkIndex + 1) * bytesPerChunk, data.size))
+      if (poolFormat == PoolFormat.AES_CTR) {
+        cipher.crypt(plaintext, 0, plaintext.size, chunkIndex)
+      } else {
+        val chunk = DeobfuscatorHelper.loadChunkFromByteArray(plaintext, plaintext.size / 2)
+        keystream.decryptChunk(chunk, boundaries[chunkIndex * 2], boundaries[chunkIndex * 2 + 1])
+        ByteBuffer.wrap(plaintext).asCharBuffer().put(chunk)
+      }
+      compress(chunkIndex, plaintext)
+    }
+  }
+
+  private fun compress(chunkIndex: Int, plaintext: ByteArray): CompressedChunk {
+    val deflater = Deflater(Deflater.BEST_COMPRESSION)
+    val output = ByteArrayOutputStream(plaintext.size / 2)
+    try {
+      deflater.setInput(plaintext)
+      deflater.finish()
+      val buffer = ByteArray(4096)
+      while (!deflater.finished()) {
+        output.write(buffer, 0, deflater.deflate(buffer))
+      }
+    } finally {
+      deflater.end()
+    }
+
+    // Pad the sealed stream to whole characters, the chunk classes embed characters
+    val byteLength = output.size()
+    val data = output.toByteArray().copyOf((byteLength + 1) and 1.inv())
+    cipher.crypt(data, 0, byteLength, chunkIndex)
+
+    val length = plaintext.size / 2
+    val expected = DeobfuscatorHelper.loadChunkFromByteArray(plaintext, length)
+    var inflateNanos = Long.MAX_VALUE
+    repeat(INFLATE_ROUNDS) {
+      val embedded = DeobfuscatorHelper.loadChunkFromByteArray(data, data.size / 2)
+      val start = System.nanoTime()
+      val inflated = DeobfuscatorHelper.inflateChunk(embedded, byteLength, length, cipher, chunkIndex)
+      inflateNanos = minOf(inflateNanos, System.nanoTime() - start)
+      check(inflated.contentEquals(expected)) { "Chunk $chunkIndex does not inflate to its plaintext" }
+    }
+    return CompressedChunk(data, byteLength, length, inflateNanos)
+  }
+
+  // Returns the size and latency report of the compressed chunks, one line per chunk after the totals
+  fun getReport(): String {
+    val rawBytes = chunks.sumOf { it.length * 2L }
+    val compressedBytes = chunks.sumOf { it.byteLength.toLong() }
+    val inflateNanos = chunks.sumOf { it.inflateNanos }
+    return buildString {
+      appendLine("LSParanoid chunk compression report")
+      appendLine("chunks:     ${chunks.size}")
+      appendLine("raw:        $rawBytes bytes")
+      appendLine("compressed: $compressedBytes bytes (${formatPercent(compressedBytes, rawBytes)} of raw)")
+      appendLine(
+        "inflate:    %.1f us total, %.1f us per chunk (best of %d rounds on the build machine)".format(
+          Locale.ROOT,
+          inflateNanos / 1000.0, inflateNanos / 1000.0 / maxOf(chunks.size, 1), INFLATE_ROUNDS
+        )
+      )
+      appendLine()
+      appendLine("chunk        raw compressed   ratio  inflate_us")
+      chunks.forEachIndexed { chunkIndex, chunk ->
+        appendLine(
+          "%5d %10d %10d %7s %11.1f".format(
+            Locale.ROOT,
+            chunkIndex,
+            chunk.length * 2,
+            chunk.byteLength,
+            formatPercent(chunk.byteLength.toLong(), chunk.length * 2L),
+            chunk.inflateNanos / 1000.0
+          )
+        )
+      }
+    }
+  }
+
+  private fun formatPercent(part: Long, whole: Long): String {
+    return if (whole == 0L) "-" else "%.1f%%".format(Locale.ROOT, part * 100.0 / whole)
+  }
+
+  // data is the sealed deflate stream padded to an even size, byteLength its unpadded size and
+  // length the number of plaintext characters
+  class CompressedChunk(
+    val data: ByteArray,
+    val byteLength: Int,
+    val length: Int,
+    val inflateNanos: Long
+  )
+
+  companion object {
+    private const val INFLATE_ROUNDS = 5
+  }
+}
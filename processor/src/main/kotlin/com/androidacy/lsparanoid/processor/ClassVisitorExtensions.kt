@@ -18,11 +18,17 @@
 package com.androidacy.lsparanoid.processor
 
 import org.objectweb.asm.ClassVisitor
+import org.objectweb.asm.Type
 import org.objectweb.asm.commons.GeneratorAdapter
 import org.objectweb.asm.commons.Method
 
-inline fun ClassVisitor.newMethod(access: Int, method: Method, body: GeneratorAdapter.() -> Unit) {
-  GeneratorAdapter(access, method, null, null, this).apply {
+inline fun ClassVisitor.newMethod(
+  access: Int,
+  method: Method,
+  exceptions: Array<Type>? = null,
+  body: GeneratorAdapter.() -> Unit
+) {
+  GeneratorAdapter(access, method, null, exceptions, this).apply {
     visitCode()
     body()
     returnValue()
@@ -20,34 +20,59 @@ package com.androidacy.lsparanoid.processor
 import com.joom.grip.ClassRegistry
 import com.joom.grip.FileRegistry
 import com.joom.grip.mirrors.toAsmType
+import com.androidacy.lsparanoid.processor.model.ChunkStorage
 import com.androidacy.lsparanoid.processor.model.Deobfuscator
+import com.androidacy.lsparanoid.processor.model.DeobfuscatorOptions
+import com.androidacy.lsparanoid.processor.model.PoolFormat
 import com.androidacy.lsparanoid.DeobfuscatorHelper
 import org.objectweb.asm.ClassVisitor
 import org.objectweb.asm.ClassWriter
+import org.objectweb.asm.Label
 import org.objectweb.asm.Opcodes
 import org.objectweb.asm.Opcodes.ACC_PUBLIC
 import org.objectweb.asm.Opcodes.ACC_SUPER
 import org.objectweb.asm.Type
 import org.objectweb.asm.commons.Method
 import org.objectweb.asm.commons.GeneratorAdapter
+import java.nio.ByteBuffer
 
 class DeobfuscatorGenerator(
   private val deobfuscator: Deobfuscator,
   private val stringRegistry: StringRegistry,
   private val classRegistry: ClassRegistry,
-  private val fileRegistry: FileRegistry
+  private val fileRegistry: FileRegistry,
+  private val options: DeobfuscatorOptions = DeobfuscatorOptions(),
+  private val compressor: ChunkCompressor? = null
 ) {
 
-  // Returns map of class name to class bytes
+  private val hasChunks = stringRegistry.getChunkCount() > 0
+  private val isDecodeCacheEnabled = options.decodeCacheSize > 0 && hasChunks
+  private val isInternEnabled = options.canonicalizeStrings && hasChunks
+  private val isPoolResource = options.chunkStorage == ChunkStorage.RESOURCE
+  private val isAesPool = options.poolFormat == PoolFormat.AES_CTR && hasChunks
+  private val isCompressed = compressor != null && hasChunks && !isPoolResource
+  private val isDecryptOnce = options.decryptChunksOnce && hasChunks && !isAesPool && !isCompressed
+  private val hasPlaintextChunks = isDecryptOnce || isAesPool || isCompressed
+  private val isPackedLatin1 = options.packLatin1 && hasChunks
+
+  // Returns map of file name to file contents: classes, plus the pool resource in resource mode
   fun generateDeobfuscatorClasses(): Map<String, ByteArray> {
     val classes = mutableMapOf<String, ByteArray>()
 
     // Generate main Deobfuscator class
     classes["${deobfuscator.type.internalName}.class"] = generateMainClass()
 
-    // Generate chunk data classes
     val chunkCount = stringRegistry.getChunkCount()
     val data = stringRegistry.getDataAsByteArray()
+    if (isPoolResource) {
+      if (chunkCount > 0) {
+        classes[poolResourceName.substring(1)] = generatePoolResource(chunkCount, data)
+        classes["$poolHolderName.class"] = generatePoolHolderClass()
+      }
+      return classes
+    }
+
+    // Generate chunk data classes
     val charsPerChunk = DeobfuscatorHelper.MAX_CHUNK_LENGTH
     val bytesPerChunk = charsPerChunk * 2  // 2 bytes per char
 
@@ -55,12 +80,62 @@ class DeobfuscatorGenerator(
       val chunkClassName = "${deobfuscator.type.internalName}\$Chunk$i"
       val startByte = i * bytesPerChunk
       val endByte = minOf((i + 1) * bytesPerChunk, data.size)
-      val chunkData = data.copyOfRange(startByte, endByte)
+      val chunkData = if (isCompressed) compressor!!.chunks[i].data else data.copyOfRange(startByte, endByte)
       classes["$chunkClassName.class"] = generateChunkClass(i, chunkData)
     }
     return classes
   }
 
+  private val poolResourceName: String
+    get() = "/${deobfuscator.type.internalName}.bin"
+
+  private val poolHolderName: String
+    get() = "${deobfuscator.type.internalName}\$Pool"
+
+  private fun generatePoolResource(chunkCount: Int, data: ByteArray): ByteArray {
+    val headerSize = DeobfuscatorHelper.POOL_HEADER_SIZE + (chunkCount + 1) * 4
+    val bytesPerChunk = DeobfuscatorHelper.MAX_CHUNK_LENGTH * 2
+    val pool = ByteBuffer.allocate(headerSize + data.size)
+    pool.putInt(DeobfuscatorHelper.POOL_MAGIC)
+    pool.putInt(chunkCount)
+    for (i in 0..chunkCount) {
+      pool.putInt(headerSize + minOf(i * bytesPerChunk, data.size))
+    }
+    pool.put(data)
+    return pool.array()
+  }
+
+  // Initialization-on-demand holder, so the pool resource is read at most once
+  private fun generatePoolHolderClass(): ByteArray {
+    val writer = StandaloneClassWriter(ClassWriter.COMPUTE_MAXS or ClassWriter.COMPUTE_FRAMES, classRegistry, fileRegistry)
+    writer.visit(
+      Opcodes.V1_6,
+      ACC_SUPER,
+      poolHolderName,
+      null,
+      OBJECT_TYPE.internalName,
+      null
+    )
+
+    writer.visitField(
+      Opcodes.ACC_STATIC or Opcodes.ACC_FINAL,
+      "CHUNKS",
+      CHUNK_ARRAY_TYPE.descriptor,
+      null,
+      null
+    ).visitEnd()
+
+    writer.newMethod(Opcodes.ACC_STATIC, METHOD_STATIC_INITIALIZER) {
+      push(deobfuscator.type.toAsmType())
+      push(poolResourceName)
+      invokeStatic(DEOBFUSCATOR_HELPER_TYPE, METHOD_LOAD_CHUNKS_FROM_POOL_RESOURCE)
+      putStatic(Type.getObjectType(poolHolderName), "CHUNKS", CHUNK_ARRAY_TYPE)
+    }
+
+    writer.visitEnd()
+    return writer.toByteArray()
+  }
+
   private fun generateMainClass(): ByteArray {
     val writer = StandaloneClassWriter(ClassWriter.COMPUTE_MAXS or ClassWriter.COMPUTE_FRAMES, classRegistry, fileRegistry)
     writer.visit(
@@ -69,14 +144,30 @@ class DeobfuscatorGenerator(
       deobfuscator.type.internalName,
       null,
       OBJECT_TYPE.internalName,
-      null
+      if (hasChunks) arrayOf(CHUNK_LOADER_TYPE.internalName) else null
     )
 
     writer.generateFields()
-    writer.generateLoadChunkMethod()
-    writer.generateGetCharAtMethod()
+    if (hasChunks) {
+      writer.generateLoadChunkMethod()
+    }
     writer.generateDefaultConstructor()
-    writer.generateGetStringMethod()
+    if (hasChunks) {
+      writer.generateStaticInitializer()
+    }
+    if (isDecodeCacheEnabled || isInternEnabled) {
+      writer.generateCachedGetStringMethod()
+      if (isDecodeCacheEnabled) {
+        writer.generateCacheCounterMethods()
+      }
+      writer.generateGetStringMethod(Opcodes.ACC_PRIVATE or Opcodes.ACC_STATIC, METHOD_DECODE)
+    } else {
+      writer.generateGetStringMethod(Opcodes.ACC_PUBLIC or Opcodes.ACC_STATIC, deobfuscator.deobfuscationMethod)
+    }
+    writer.generateGetStringsMethod()
+    writer.generateAllocationFreeMethods()
+    writer.generatePrewarmMethods()
+    writer.generateTrimMemoryMethod()
 
     writer.visitEnd()
     return writer.toByteArray()
@@ -95,22 +186,11 @@ class DeobfuscatorGenerator(
       null
     )
 
-    // Add DATA field
-    writer.visitField(
-      Opcodes.ACC_STATIC or Opcodes.ACC_FINAL,
-      "DATA",
-      "[B",
-      null,
-      null
-    ).visitEnd()
-
-    // Generate static initializer with Base64-encoded chunk data
-    val base64Data = java.util.Base64.getEncoder().encodeToString(chunkData)
-    writer.newMethod(Opcodes.ACC_STATIC, Method("<clinit>", "()V")) {
-      push(base64Data)
-      invokeStatic(BASE64_DECODER_TYPE, METHOD_BASE64_DECODE)
-      putStatic(Type.getObjectType(className), "DATA", Type.getType("[B"))
-      returnValue()
+    when (options.chunkStorage) {
+      ChunkStorage.BASE64 -> writer.generateBase64ChunkData(chunkData)
+      ChunkStorage.RAW_STRING -> writer.generateRawChunkData(chunkData)
+      ChunkStorage.RESOURCE -> error("Chunk classes are not generated for a pool resource")
+      ChunkStorage.ARRAY -> writer.generateArrayChunkData(chunkData)
     }
 
     // Default constructor
@@ -124,23 +204,312 @@ class DeobfuscatorGenerator(
     return writer.toByteArray()
   }
 
+  // Chunk classes have no static state. load() decodes a new copy of the chunk on every call, so
+  // the chunk table holds the only decoded copy and a trimmed chunk can be collected.
+  //
+  // The chunk is built by a long[] array initializer, four characters per element. No constant of
+  // the class refers to a heap object, unlike the string constants of the other modes, which the
+  // class keeps resolved for as long as it is loaded. d8 turns the initializer into a
+  // fill-array-data payload holding the raw ciphertext.
+  private fun ClassVisitor.generateArrayChunkData(chunkData: ByteArray) {
+    val words = ByteBuffer.wrap(chunkData.copyOf((chunkData.size + 7) and 7.inv())).asLongBuffer()
+    newMethod(Opcodes.ACC_STATIC, METHOD_CHUNK_LOAD) {
+      // long[] data = { ... }
+      push(words.limit())
+      newArray(Type.LONG_TYPE)
+      for (i in 0 until words.limit()) {
+        dup()
+        push(i)
+        push(words.get(i))
+        arrayStore(Type.LONG_TYPE)
+      }
+
+      // return DeobfuscatorHelper.loadChunkFromLongArray(data, length)
+      push(chunkData.size / 2)
+      invokeStatic(DEOBFUSCATOR_HELPER_TYPE, METHOD_LOAD_CHUNK_FROM_LONG_ARRAY)
+    }
+  }
+
+  private fun ClassVisitor.generateBase64ChunkData(chunkData: ByteArray) {
+    val base64Data = java.util.Base64.getEncoder().encodeToString(chunkData)
+    newMethod(Opcodes.ACC_STATIC, METHOD_CHUNK_LOAD) {
+      // char[] data = new char[length]
+      push(chunkData.size / 2)
+      newArray(Type.CHAR_TYPE)
+      val data = newLocal(CHAR_ARRAY_TYPE)
+      storeLocal(data)
+
+      // Base64Decoder.decodeToChars(base64Data, data, 0)
+      push(base64Data)
+      loadLocal(data)
+      push(0)
+      invokeStatic(BASE64_DECODER_TYPE, METHOD_BASE64_DECODE_TO_CHARS)
+      pop()
+
+      // return data
+      loadLocal(data)
+    }
+  }
+
+  private fun ClassVisitor.generateRawChunkData(chunkData: ByteArray) {
+    // The ciphertext is a string constant. Modified UTF-8 can hold any UTF-16 code unit, and a
+    // full chunk stays well below the 65535 byte constant limit.
+    val rawData = DeobfuscatorHelper.loadChunkFromByteArray(chunkData, chunkData.size / 2).concatToString()
+    newMethod(Opcodes.ACC_STATIC, METHOD_CHUNK_LOAD) {
+      // return rawData.toCharArray()
+      push(rawData)
+      invokeVirtual(STRING_TYPE, METHOD_TO_CHAR_ARRAY)
+    }
+  }
+
   private fun ClassVisitor.generateFields() {
-    // String[] chunks field - lazy loaded on demand
-    visitField(
-      Opcodes.ACC_PRIVATE or Opcodes.ACC_STATIC or Opcodes.ACC_VOLATILE,
-      "chunks",
-      STRING_ARRAY_TYPE.descriptor,
-      null,
-      null
-    ).visitEnd()
+    if (hasChunks) {
+      // Chunks are loaded on demand and published through the table
+      visitField(
+        Opcodes.ACC_PRIVATE or Opcodes.ACC_STATIC or Opcodes.ACC_FINAL,
+        "chunks",
+        CHUNK_TABLE_TYPE.descriptor,
+        null,
+        null
+      ).visitEnd()
+
+      // Every ID carries the same seed, so all strings share the index mask and the keystream
+      visitField(
+        Opcodes.ACC_PRIVATE or Opcodes.ACC_STATIC or Opcodes.ACC_FINAL,
+        "keystream",
+        KEYSTREAM_TABLE_TYPE.descriptor,
+        null,
+        null
+      ).visitEnd()
+      visitField(
+        Opcodes.ACC_PRIVATE or Opcodes.ACC_STATIC or Opcodes.ACC_FINAL,
+        "mask",
+        Type.LONG_TYPE.descriptor,
+        null,
+        null
+      ).visitEnd()
+    }
+
+    if (isAesPool || isCompressed) {
+      visitField(
+        Opcodes.ACC_PRIVATE or Opcodes.ACC_STATIC or Opcodes.ACC_FINAL,
+        "cipher",
+        POOL_CIPHER_TYPE.descriptor,
+        null,
+        null
+      ).visitEnd()
+    }
+
+    if (isDecryptOnce) {
+      // Where strings continue across chunks, so a chunk can be decrypted on its own
+      visitField(
+        Opcodes.ACC_PRIVATE or Opcodes.ACC_STATIC or Opcodes.ACC_FINAL,
+        "boundaries",
+        INT_ARRAY_TYPE.descriptor,
+        null,
+        null
+      ).visitEnd()
+    }
+
+    if (isDecodeCacheEnabled) {
+      visitField(
+        Opcodes.ACC_PRIVATE or Opcodes.ACC_STATIC or Opcodes.ACC_FINAL,
+        "cache",
+        DECODE_CACHE_TYPE.descriptor,
+        null,
+        null
+      ).visitEnd()
+    }
+
+    if (isInternEnabled) {
+      visitField(
+        Opcodes.ACC_PRIVATE or Opcodes.ACC_STATIC or Opcodes.ACC_FINAL,
+        "intern",
+        INTERN_TABLE_TYPE.descriptor,
+        null,
+        null
+      ).visitEnd()
+    }
+  }
+
+  private fun ClassVisitor.generateStaticInitializer() {
+    newMethod(Opcodes.ACC_STATIC, METHOD_STATIC_INITIALIZER) {
+      // ChunkLoader loader = new Deobfuscator()
+      newInstance(deobfuscator.type.toAsmType())
+      dup()
+      invokeConstructor(deobfuscator.type.toAsmType(), METHOD_DEFAULT_CONSTRUCTOR)
+      val loader = newLocal(CHUNK_LOADER_TYPE)
+      storeLocal(loader)
+
+      // chunks = new ChunkTable(chunkCount, loader[, true])
+      newInstance(CHUNK_TABLE_TYPE)
+      dup()
+      push(stringRegistry.getChunkCount())
+      loadLocal(loader)
+      if (options.softChunkReferences) {
+        push(true)
+        invokeConstructor(CHUNK_TABLE_TYPE, METHOD_CHUNK_TABLE_SOFT_CONSTRUCTOR)
+      } else {
+        invokeConstructor(CHUNK_TABLE_TYPE, METHOD_CHUNK_TABLE_CONSTRUCTOR)
+      }
+      putStatic(deobfuscator.type.toAsmType(), "chunks", CHUNK_TABLE_TYPE)
+
+      // keystream = new KeystreamTable(seed, wordKeystream, packedLatin1); mask = keystream.getIndexMask()
+      // AES-CTR pools only use the index mask of the table
+      newInstance(KEYSTREAM_TABLE_TYPE)
+      dup()
+      push(stringRegistry.getSeed())
+      push(options.poolFormat == PoolFormat.V2)
+      push(options.packLatin1)
+      invokeConstructor(KEYSTREAM_TABLE_TYPE, METHOD_KEYSTREAM_TABLE_CONSTRUCTOR)
+      dup()
+      putStatic(deobfuscator.type.toAsmType(), "keystream", KEYSTREAM_TABLE_TYPE)
+      invokeVirtual(KEYSTREAM_TABLE_TYPE, METHOD_KEYSTREAM_TABLE_GET_INDEX_MASK)
+      putStatic(deobfuscator.type.toAsmType(), "mask", Type.LONG_TYPE)
+
+      if (isAesPool || isCompressed) {
+        // cipher = new PoolCipher(seed)
+        newInstance(POOL_CIPHER_TYPE)
+        dup()
+        push(stringRegistry.getSeed())
+        invokeConstructor(POOL_CIPHER_TYPE, METHOD_POOL_CIPHER_CONSTRUCTOR)
+        putStatic(deobfuscator.type.toAsmType(), "cipher", POOL_CIPHER_TYPE)
+      }
+
+      if (isDecryptOnce) {
+        // boundaries = new int[] { ... }
+        val boundaries = stringRegistry.getChunkBoundaries()
+        push(boundaries.size)
+        newArray(Type.INT_TYPE)
+        for (i in boundaries.indices) {
+          if (boundaries[i] != 0) {
+            dup()
+            push(i)
+            push(boundaries[i])
+            arrayStore(Type.INT_TYPE)
+          }
+        }
+        putStatic(deobfuscator.type.toAsmType(), "boundaries", INT_ARRAY_TYPE)
+      }
+
+      if (isDecodeCacheEnabled) {
+        // cache = new DecodeCache(decodeCacheSize)
+        newInstance(DECODE_CACHE_TYPE)
+        dup()
+        push(options.decodeCacheSize)
+        invokeConstructor(DECODE_CACHE_TYPE, METHOD_DECODE_CACHE_CONSTRUCTOR)
+        putStatic(deobfuscator.type.toAsmType(), "cache", DECODE_CACHE_TYPE)
+      }
+
+      if (isInternEnabled) {
+        // intern = new InternTable()
+        newInstance(INTERN_TABLE_TYPE)
+        dup()
+        invokeConstructor(INTERN_TABLE_TYPE, METHOD_DEFAULT_CONSTRUCTOR)
+        putStatic(deobfuscator.type.toAsmType(), "intern", INTERN_TABLE_TYPE)
+      }
+    }
+  }
+
+  // getString in front of the private decode method, looking the string up in the decode cache
+  // and the intern table, whichever are enabled, before decoding it
+  private fun ClassVisitor.generateCachedGetStringMethod() {
+    newMethod(Opcodes.ACC_PUBLIC or Opcodes.ACC_STATIC, deobfuscator.deobfuscationMethod) {
+      val value = newLocal(STRING_TYPE)
+      val found = newLabel()
+
+      if (isDecodeCacheEnabled) {
+        // String value = cache.get(id); if (value != null) return value
+        getStatic(deobfuscator.type.toAsmType(), "cache", DECODE_CACHE_TYPE)
+        loadArg(0)
+        invokeVirtual(DECODE_CACHE_TYPE, METHOD_DECODE_CACHE_GET)
+        storeLocal(value)
+        loadLocal(value)
+        ifNonNull(found)
+      }
+
+      if (isInternEnabled) {
+        // value = intern.get(id); if (value == null) value = intern.intern(id, decode(id))
+        val interned = newLabel()
+        getStatic(deobfuscator.type.toAsmType(), "intern", INTERN_TABLE_TYPE)
+        loadArg(0)
+        invokeVirtual(INTERN_TABLE_TYPE, METHOD_INTERN_TABLE_GET)
+        storeLocal(value)
+        loadLocal(value)
+        ifNonNull(interned)
+        getStatic(deobfuscator.type.toAsmType(), "intern", INTERN_TABLE_TYPE)
+        loadArg(0)
+        loadArg(0)
+        invokeStatic(deobfuscator.type.toAsmType(), METHOD_DECODE)
+        invokeVirtual(INTERN_TABLE_TYPE, METHOD_INTERN_TABLE_INTERN)
+        storeLocal(value)
+        mark(interned)
+      } else {
+        // value = decode(id)
+        loadArg(0)
+        invokeStatic(deobfuscator.type.toAsmType(), METHOD_DECODE)
+        storeLocal(value)
+      }
+
+      if (isDecodeCacheEnabled) {
+        // cache.put(id, value)
+        getStatic(deobfuscator.type.toAsmType(), "cache", DECODE_CACHE_TYPE)
+        loadArg(0)
+        loadLocal(value)
+        invokeVirtual(DECODE_CACHE_TYPE, METHOD_DECODE_CACHE_PUT)
+      }
+
+      // return value
+      mark(found)
+      loadLocal(value)
+    }
+  }
+
+  private fun ClassVisitor.generateCacheCounterMethods() {
+    newMethod(Opcodes.ACC_PUBLIC or Opcodes.ACC_STATIC, METHOD_GET_CACHE_HIT_COUNT) {
+      getStatic(deobfuscator.type.toAsmType(), "cache", DECODE_CACHE_TYPE)
+      invokeVirtual(DECODE_CACHE_TYPE, METHOD_DECODE_CACHE_GET_HIT_COUNT)
+    }
+    newMethod(Opcodes.ACC_PUBLIC or Opcodes.ACC_STATIC, METHOD_GET_CACHE_MISS_COUNT) {
+      getStatic(deobfuscator.type.toAsmType(), "cache", DECODE_CACHE_TYPE)
+      invokeVirtual(DECODE_CACHE_TYPE, METHOD_DECODE_CACHE_GET_MISS_COUNT)
+    }
   }
 
   private fun ClassVisitor.generateLoadChunkMethod() {
-    newMethod(Opcodes.ACC_PRIVATE or Opcodes.ACC_STATIC, METHOD_LOAD_CHUNK) {
-      val chunkCount = stringRegistry.getChunkCount()
-      val totalLength = stringRegistry.getTotalLength()
-      val charsPerChunk = DeobfuscatorHelper.MAX_CHUNK_LENGTH.toLong()
+    newMethod(Opcodes.ACC_PUBLIC, METHOD_LOAD_CHUNK) {
+      if (isPoolResource) {
+        // The pool holder hands out each chunk it read once, then forgets it:
+        //   char[] chunk = Pool.CHUNKS[index]
+        //   if (chunk != null) { Pool.CHUNKS[index] = null; return chunk; }
+        //   return DeobfuscatorHelper.loadChunkFromPoolResource(Deobfuscator.class, name, index)
+        getStatic(Type.getObjectType(poolHolderName), "CHUNKS", CHUNK_ARRAY_TYPE)
+        loadArg(0)
+        arrayLoad(CHAR_ARRAY_TYPE)
+        val chunk = newLocal(CHAR_ARRAY_TYPE)
+        storeLocal(chunk)
+        loadLocal(chunk)
+        val consumed = newLabel()
+        ifNull(consumed)
+        getStatic(Type.getObjectType(poolHolderName), "CHUNKS", CHUNK_ARRAY_TYPE)
+        loadArg(0)
+        visitInsn(Opcodes.ACONST_NULL)
+        arrayStore(CHAR_ARRAY_TYPE)
+        loadLocal(chunk)
+        decryptLoadedChunk()
+        returnValue()
+
+        // Already handed out and dropped since, read it from the resource again
+        mark(consumed)
+        push(deobfuscator.type.toAsmType())
+        push(poolResourceName)
+        loadArg(0)
+        invokeStatic(DEOBFUSCATOR_HELPER_TYPE, METHOD_LOAD_CHUNK_FROM_POOL_RESOURCE)
+        decryptLoadedChunk()
+        return@newMethod
+      }
 
+      val chunkCount = stringRegistry.getChunkCount()
       val switchLabels = Array(chunkCount) { newLabel() }
       val defaultLabel = newLabel()
       val endLabel = newLabel()
@@ -153,18 +522,17 @@ class DeobfuscatorGenerator(
         mark(switchLabels[i])
         val chunkClassName = "${deobfuscator.type.internalName}\$Chunk$i"
 
-        // Load DATA field
-        getStatic(Type.getObjectType(chunkClassName), "DATA", Type.getType("[B"))
-
-        // Calculate length for this chunk
-        val startChar = i * charsPerChunk
-        val endChar = minOf((i + 1) * charsPerChunk, totalLength)
-        val chunkLength = endChar - startChar
-
-        push(chunkLength)
-        invokeStatic(DEOBFUSCATOR_HELPER_TYPE, METHOD_LOAD_CHUNKS_FROM_BYTE_ARRAY)
-        push(0)  // Get first (and only) element
-        arrayLoad(Type.getType(String::class.java))
+        // Decode a new copy of the chunk characters
+        invokeStatic(Type.getObjectType(chunkClassName), METHOD_CHUNK_LOAD)
+        if (isCompressed) {
+          // DeobfuscatorHelper.inflateChunk(data, byteLength, length, cipher, index)
+          val compressedChunk = compressor!!.chunks[i]
+          push(compressedChunk.byteLength)
+          push(compressedChunk.length)
+          getStatic(deobfuscator.type.toAsmType(), "cipher", POOL_CIPHER_TYPE)
+          loadArg(0)
+          invokeStatic(DEOBFUSCATOR_HELPER_TYPE, METHOD_INFLATE_CHUNK)
+        }
         goTo(endLabel)
       }
 
@@ -172,234 +540,805 @@ class DeobfuscatorGenerator(
       throwException(Type.getType(IllegalArgumentException::class.java), "Invalid chunk index")
 
       mark(endLabel)
+      decryptLoadedChunk()
       returnValue()
     }
   }
 
-  private fun ClassVisitor.generateGetCharAtMethod() {
-    // private static long getCharAt(int charIndex, long state)
-    newMethod(Opcodes.ACC_PRIVATE or Opcodes.ACC_STATIC, METHOD_GET_CHAR_AT) {
-      val maxChunkLength = DeobfuscatorHelper.MAX_CHUNK_LENGTH
-
-      // long nextState = RandomHelper.next(state)
-      loadArg(1) // state
-      invokeStatic(RANDOM_HELPER_TYPE, METHOD_RANDOM_NEXT)
-      val nextState = newLocal(Type.LONG_TYPE)
-      storeLocal(nextState)
-
-      // int chunkIndex = charIndex / MAX_CHUNK_LENGTH
-      loadArg(0) // charIndex (int)
-      push(maxChunkLength) // MAX_CHUNK_LENGTH (int)
-      math(GeneratorAdapter.DIV, Type.INT_TYPE) // charIndex / MAX_CHUNK_LENGTH
-      val chunkIndex = newLocal(Type.INT_TYPE)
-      storeLocal(chunkIndex)
-
-      // String chunk = chunks[chunkIndex]
-      getStatic(deobfuscator.type.toAsmType(), "chunks", STRING_ARRAY_TYPE)
-      loadLocal(chunkIndex)
-      arrayLoad(STRING_TYPE)
-      val chunk = newLocal(STRING_TYPE)
-      storeLocal(chunk)
-
-      // if (chunk == null) { chunk = loadChunk(chunkIndex); chunks[chunkIndex] = chunk; }
-      loadLocal(chunk)
-      val chunkLoaded = newLabel()
-      ifNonNull(chunkLoaded)
-
-      loadLocal(chunkIndex)
-      invokeStatic(deobfuscator.type.toAsmType(), METHOD_LOAD_CHUNK)
-      dup()
-      storeLocal(chunk)
-      getStatic(deobfuscator.type.toAsmType(), "chunks", STRING_ARRAY_TYPE)
-      swap()
-      loadLocal(chunkIndex)
+  // Replaces the chunk loaded for argument 0 on the stack with its plaintext, in AES-CTR pools:
+  //   cipher.decryptChunk(chunk, index)
+  // and in decrypt-once mode:
+  //   keystream.decryptChunk(chunk, boundaries[index * 2], boundaries[index * 2 + 1])
+  // Compressed chunks are already plaintext once inflated.
+  private fun GeneratorAdapter.decryptLoadedChunk() {
+    if (isCompressed) {
+      return
+    }
+    if (isAesPool) {
+      getStatic(deobfuscator.type.toAsmType(), "cipher", POOL_CIPHER_TYPE)
       swap()
-      arrayStore(STRING_TYPE)
-
-      mark(chunkLoaded)
-
-      // int indexInChunk = charIndex - (chunkIndex * MAX_CHUNK_LENGTH)
-      loadArg(0) // charIndex
-      loadLocal(chunkIndex)
-      push(maxChunkLength)
-      math(GeneratorAdapter.MUL, Type.INT_TYPE)
-      math(GeneratorAdapter.SUB, Type.INT_TYPE)
-      val indexInChunk = newLocal(Type.INT_TYPE)
-      storeLocal(indexInChunk)
-
-      // return nextState ^ ((long)chunk.charAt(indexInChunk) << 32)
-      loadLocal(nextState)
-      loadLocal(chunk)
-      loadLocal(indexInChunk)
-      invokeVirtual(STRING_TYPE, Method("charAt", "(I)C"))
-      cast(Type.CHAR_TYPE, Type.LONG_TYPE)
-      push(32)
-      math(GeneratorAdapter.SHL, Type.LONG_TYPE)
-      math(GeneratorAdapter.XOR, Type.LONG_TYPE)
-      returnValue()
+      loadArg(0)
+      invokeVirtual(POOL_CIPHER_TYPE, METHOD_POOL_CIPHER_DECRYPT_CHUNK)
+      return
+    }
+    if (!isDecryptOnce) {
+      return
     }
+
+    getStatic(deobfuscator.type.toAsmType(), "keystream", KEYSTREAM_TABLE_TYPE)
+    swap()
+    getStatic(deobfuscator.type.toAsmType(), "boundaries", INT_ARRAY_TYPE)
+    loadArg(0)
+    push(2)
+    math(GeneratorAdapter.MUL, Type.INT_TYPE)
+    arrayLoad(Type.INT_TYPE)
+    getStatic(deobfuscator.type.toAsmType(), "boundaries", INT_ARRAY_TYPE)
+    loadArg(0)
+    push(2)
+    math(GeneratorAdapter.MUL, Type.INT_TYPE)
+    push(1)
+    math(GeneratorAdapter.ADD, Type.INT_TYPE)
+    arrayLoad(Type.INT_TYPE)
+    invokeVirtual(KEYSTREAM_TABLE_TYPE, METHOD_KEYSTREAM_TABLE_DECRYPT_CHUNK)
   }
 
+  // Private, so the chunk loader created by the static initializer is the only instance and the
+  // decrypted pool can't be read through a new one
   private fun ClassVisitor.generateDefaultConstructor() {
-    newMethod(Opcodes.ACC_PUBLIC, METHOD_DEFAULT_CONSTRUCTOR) {
+    newMethod(Opcodes.ACC_PRIVATE, METHOD_DEFAULT_CONSTRUCTOR) {
       loadThis()
       invokeConstructor(OBJECT_TYPE, METHOD_DEFAULT_CONSTRUCTOR)
       returnValue()
     }
   }
 
-  private fun ClassVisitor.generateGetStringMethod() {
-    newMethod(Opcodes.ACC_PUBLIC or Opcodes.ACC_STATIC, deobfuscator.deobfuscationMethod) {
-      val chunkCount = stringRegistry.getChunkCount()
-
+  private fun ClassVisitor.generateGetStringMethod(access: Int, method: Method) {
+    newMethod(access, method) {
       // Handle empty string registry
-      if (chunkCount == 0) {
+      if (!hasChunks) {
         push("")
         returnValue()
         return@newMethod
       }
 
-      // Lazy-initialize chunks array
-      getStatic(deobfuscator.type.toAsmType(), "chunks", STRING_ARRAY_TYPE)
-      val chunksReady = newLabel()
-      ifNonNull(chunksReady)
-
-      push(chunkCount)
-      newArray(STRING_TYPE)
-      putStatic(deobfuscator.type.toAsmType(), "chunks", STRING_ARRAY_TYPE)
-
-      mark(chunksReady)
-
-      // long state = RandomHelper.seed(id & 0xFFFFFFFFL)
-      loadArg(0) // id
-      push(0xFFFFFFFFL)
-      math(GeneratorAdapter.AND, Type.LONG_TYPE)
-      invokeStatic(RANDOM_HELPER_TYPE, METHOD_RANDOM_SEED)
-      val state = newLocal(Type.LONG_TYPE)
-      storeLocal(state)
-
-      // state = RandomHelper.next(state)
-      loadLocal(state)
-      invokeStatic(RANDOM_HELPER_TYPE, METHOD_RANDOM_NEXT)
-      storeLocal(state)
-
-      // long low = (state >>> 32) & 0xffff
-      loadLocal(state)
-      push(32)
-      math(GeneratorAdapter.USHR, Type.LONG_TYPE)
-      push(0xffffL)
-      math(GeneratorAdapter.AND, Type.LONG_TYPE)
-      val low = newLocal(Type.LONG_TYPE)
-      storeLocal(low)
-
-      // state = RandomHelper.next(state)
-      loadLocal(state)
-      invokeStatic(RANDOM_HELPER_TYPE, METHOD_RANDOM_NEXT)
-      storeLocal(state)
-
-      // long high = (state >>> 16) & 0xffff0000
-      loadLocal(state)
-      push(16)
-      math(GeneratorAdapter.USHR, Type.LONG_TYPE)
-      push(0xffff0000L)
-      math(GeneratorAdapter.AND, Type.LONG_TYPE)
-      val high = newLocal(Type.LONG_TYPE)
-      storeLocal(high)
-
-      // int index = (int)((id >>> 32) ^ low ^ high)
-      loadArg(0) // id
-      push(32)
-      math(GeneratorAdapter.USHR, Type.LONG_TYPE)
-      loadLocal(low)
-      math(GeneratorAdapter.XOR, Type.LONG_TYPE)
-      loadLocal(high)
-      math(GeneratorAdapter.XOR, Type.LONG_TYPE)
-      cast(Type.LONG_TYPE, Type.INT_TYPE)
-      val index = newLocal(Type.INT_TYPE)
-      storeLocal(index)
+      val (chunks, index) = loadIndexOfArg()
+      decodeStringAt(chunks, index)
+      returnValue()
+    }
+  }
 
-      // state = getCharAt(index, state)
-      loadLocal(index)
-      loadLocal(state)
-      invokeStatic(deobfuscator.type.toAsmType(), METHOD_GET_CHAR_AT)
-      storeLocal(state)
-
-      // int length = (int)((state >>> 32) & 0xffffL)
-      loadLocal(state)
-      push(32)
-      math(GeneratorAdapter.USHR, Type.LONG_TYPE)
-      push(0xffffL)
-      math(GeneratorAdapter.AND, Type.LONG_TYPE)
-      cast(Type.LONG_TYPE, Type.INT_TYPE)
-      val length = newLocal(Type.INT_TYPE)
-      storeLocal(length)
+  private fun ClassVisitor.generateAllocationFreeMethods() {
+    // public static int length(long id)
+    newMethod(Opcodes.ACC_PUBLIC or Opcodes.ACC_STATIC, METHOD_LENGTH) {
+      if (!hasChunks) {
+        push(0)
+        return@newMethod
+      }
 
-      // char[] chars = new char[length]
-      loadLocal(length)
-      newArray(Type.CHAR_TYPE)
-      val chars = newLocal(Type.getType("[C"))
-      storeLocal(chars)
+      val (chunks, index) = loadIndexOfArg()
+      val cursor = beginDecodeAt(chunks, index)
+      loadLocal(cursor.length)
+    }
+
+    // public static int getChars(long id, char[] dst, int off)
+    newMethod(Opcodes.ACC_PUBLIC or Opcodes.ACC_STATIC, METHOD_GET_CHARS) {
+      if (!hasChunks) {
+        push(0)
+        return@newMethod
+      }
+
+      val (chunks, index) = loadIndexOfArg()
+      val cursor = beginDecodeAt(chunks, index)
+
+      // if (off < 0 || off > dst.length - length) throw new IndexOutOfBoundsException()
+      // Checked up front so nothing is written for a string that doesn't fit
+      val fits = newLabel()
+      val outOfBounds = newLabel()
+      loadArg(2)
+      ifZCmp(GeneratorAdapter.LT, outOfBounds)
+      loadArg(2)
+      loadArg(1)
+      arrayLength()
+      loadLocal(cursor.length)
+      math(GeneratorAdapter.SUB, Type.INT_TYPE)
+      ifICmp(GeneratorAdapter.LE, fits)
+      mark(outOfBounds)
+      throwException(INDEX_OUT_OF_BOUNDS_EXCEPTION_TYPE, "Destination buffer is too small")
+      mark(fits)
+
+      // dst[off + i] = (char) key
+      decodeCharsAt(cursor) { i, pushChar ->
+        loadArg(1)
+        loadArg(2)
+        loadLocal(i)
+        math(GeneratorAdapter.ADD, Type.INT_TYPE)
+        pushChar()
+        arrayStore(Type.CHAR_TYPE)
+      }
+      loadLocal(cursor.length)
+    }
+
+    // public static void appendTo(long id, Appendable appendable) throws IOException
+    newMethod(Opcodes.ACC_PUBLIC or Opcodes.ACC_STATIC, METHOD_APPEND_TO, arrayOf(IO_EXCEPTION_TYPE)) {
+      if (!hasChunks) {
+        return@newMethod
+      }
+
+      val (chunks, index) = loadIndexOfArg()
+      val cursor = beginDecodeAt(chunks, index)
 
-      // for (int i = 0; i < length; i++)
+      // appendable.append((char) key)
+      decodeCharsAt(cursor) { _, pushChar ->
+        loadArg(1)
+        pushChar()
+        invokeInterface(APPENDABLE_TYPE, METHOD_APPENDABLE_APPEND_CHAR)
+        pop()
+      }
+    }
+  }
+
+  private fun ClassVisitor.generateGetStringsMethod() {
+    newMethod(Opcodes.ACC_PUBLIC or Opcodes.ACC_STATIC, METHOD_GET_STRINGS) {
       val i = newLocal(Type.INT_TYPE)
+      val loopStart = newLabel()
+      val loopEnd = newLabel()
+
+      if (!hasChunks) {
+        // for (int i = 0; i < ids.length; i++) out[i] = getString(ids[i])
+        push(0)
+        storeLocal(i)
+        mark(loopStart)
+        loadLocal(i)
+        loadArg(0)
+        arrayLength()
+        ifICmp(GeneratorAdapter.GE, loopEnd)
+        loadArg(1)
+        loadLocal(i)
+        loadArg(0)
+        loadLocal(i)
+        arrayLoad(Type.LONG_TYPE)
+        invokeStatic(deobfuscator.type.toAsmType(), deobfuscator.deobfuscationMethod)
+        arrayStore(STRING_TYPE)
+        iinc(i, 1)
+        goTo(loopStart)
+        mark(loopEnd)
+        return@newMethod
+      }
+
+      // if (ids.length == 0) return
+      loadArg(0)
+      arrayLength()
+      ifZCmp(GeneratorAdapter.EQ, loopEnd)
+
+      // ChunkTable chunks = Deobfuscator.chunks
+      getStatic(deobfuscator.type.toAsmType(), "chunks", CHUNK_TABLE_TYPE)
+      val chunks = newLocal(CHUNK_TABLE_TYPE)
+      storeLocal(chunks)
+
+      val index = newLocal(Type.INT_TYPE)
+
+      // for (int i = 0; i < ids.length; i++)
       push(0)
       storeLocal(i)
-      val loopStart = mark()
+      mark(loopStart)
       loadLocal(i)
-      loadLocal(length)
-      val loopEnd = newLabel()
+      loadArg(0)
+      arrayLength()
       ifICmp(GeneratorAdapter.GE, loopEnd)
 
-      // state = getCharAt(index + i + 1, state)
-      loadLocal(index)
+      // int index = (int) ((ids[i] >>> 32) ^ mask)
+      loadArg(0)
       loadLocal(i)
-      math(GeneratorAdapter.ADD, Type.INT_TYPE)
-      push(1)
-      math(GeneratorAdapter.ADD, Type.INT_TYPE)
-      loadLocal(state)
-      invokeStatic(deobfuscator.type.toAsmType(), METHOD_GET_CHAR_AT)
-      storeLocal(state)
+      arrayLoad(Type.LONG_TYPE)
+      pushIndexOfId()
+      storeLocal(index)
 
-      // chars[i] = (char)((state >>> 32) & 0xffffL)
-      loadLocal(chars)
+      // out[i] = decodeStringAt(index)
+      loadArg(1)
       loadLocal(i)
-      loadLocal(state)
-      push(32)
-      math(GeneratorAdapter.USHR, Type.LONG_TYPE)
-      push(0xffffL)
-      math(GeneratorAdapter.AND, Type.LONG_TYPE)
-      cast(Type.LONG_TYPE, Type.CHAR_TYPE)
-      arrayStore(Type.CHAR_TYPE)
+      decodeStringAt(chunks, index)
+      if (isInternEnabled) {
+        // out[i] = intern.intern(ids[i], value)
+        val value = newLocal(STRING_TYPE)
+        storeLocal(value)
+        getStatic(deobfuscator.type.toAsmType(), "intern", INTERN_TABLE_TYPE)
+        loadArg(0)
+        loadLocal(i)
+        arrayLoad(Type.LONG_TYPE)
+        loadLocal(value)
+        invokeVirtual(INTERN_TABLE_TYPE, METHOD_INTERN_TABLE_INTERN)
+      }
+      arrayStore(STRING_TYPE)
 
-      // i++
       iinc(i, 1)
       goTo(loopStart)
-
       mark(loopEnd)
+    }
+  }
+
+  private fun ClassVisitor.generatePrewarmMethods() {
+    // public static Future prewarm(Executor executor) { return chunks.prewarm(executor, null); }
+    newMethod(Opcodes.ACC_PUBLIC or Opcodes.ACC_STATIC, METHOD_PREWARM_EXECUTOR) {
+      if (hasChunks) {
+        getStatic(deobfuscator.type.toAsmType(), "chunks", CHUNK_TABLE_TYPE)
+        loadArg(0)
+        visitInsn(Opcodes.ACONST_NULL)
+        invokeVirtual(CHUNK_TABLE_TYPE, METHOD_CHUNK_TABLE_PREWARM_EXECUTOR)
+      } else {
+        invokeStatic(CHUNK_TABLE_TYPE, METHOD_CHUNK_TABLE_COMPLETED_PREWARM)
+      }
+    }
+
+    // public static Future prewarm(int[] chunkIndices) { return chunks.prewarm(chunkIndices); }
+    newMethod(Opcodes.ACC_PUBLIC or Opcodes.ACC_STATIC, METHOD_PREWARM_INDICES) {
+      if (hasChunks) {
+        getStatic(deobfuscator.type.toAsmType(), "chunks", CHUNK_TABLE_TYPE)
+        loadArg(0)
+        invokeVirtual(CHUNK_TABLE_TYPE, METHOD_CHUNK_TABLE_PREWARM_INDICES)
+      } else {
+        invokeStatic(CHUNK_TABLE_TYPE, METHOD_CHUNK_TABLE_COMPLETED_PREWARM)
+      }
+    }
+  }
+
+  private fun ClassVisitor.generateTrimMemoryMethod() {
+    // public static void trimMemory(int level)
+    newMethod(Opcodes.ACC_PUBLIC or Opcodes.ACC_STATIC, METHOD_TRIM_MEMORY) {
+      if (!hasChunks) {
+        return@newMethod
+      }
+
+      // if (chunks.trim(level)) cache.clear()
+      getStatic(deobfuscator.type.toAsmType(), "chunks", CHUNK_TABLE_TYPE)
+      loadArg(0)
+      invokeVirtual(CHUNK_TABLE_TYPE, METHOD_CHUNK_TABLE_TRIM)
+      if (isDecodeCacheEnabled) {
+        val notTrimmed = newLabel()
+        ifZCmp(GeneratorAdapter.EQ, notTrimmed)
+        getStatic(deobfuscator.type.toAsmType(), "cache", DECODE_CACHE_TYPE)
+        invokeVirtual(DECODE_CACHE_TYPE, METHOD_DECODE_CACHE_CLEAR)
+        mark(notTrimmed)
+      } else {
+        pop()
+      }
+    }
+  }
+
+  // Loads the chunk table and the pool position of the string whose ID is argument 0.
+  // Returns the chunk table and index locals.
+  private fun GeneratorAdapter.loadIndexOfArg(): Pair<Int, Int> {
+    // ChunkTable chunks = Deobfuscator.chunks
+    getStatic(deobfuscator.type.toAsmType(), "chunks", CHUNK_TABLE_TYPE)
+    val chunks = newLocal(CHUNK_TABLE_TYPE)
+    storeLocal(chunks)
+
+    // int index = (int) ((id >>> 32) ^ mask)
+    loadArg(0) // id
+    pushIndexOfId()
+    val index = newLocal(Type.INT_TYPE)
+    storeLocal(index)
+
+    return chunks to index
+  }
+
+  // Replaces the ID on the stack with its pool position: (int) ((id >>> 32) ^ mask)
+  private fun GeneratorAdapter.pushIndexOfId() {
+    push(32)
+    math(GeneratorAdapter.USHR, Type.LONG_TYPE)
+    getStatic(deobfuscator.type.toAsmType(), "mask", Type.LONG_TYPE)
+    math(GeneratorAdapter.XOR, Type.LONG_TYPE)
+    cast(Type.LONG_TYPE, Type.INT_TYPE)
+  }
 
-      // return new String(chars)
+  // Decodes the string at pool position index, leaving it on the stack
+  private fun GeneratorAdapter.decodeStringAt(chunks: Int, index: Int) {
+    val cursor = beginDecodeAt(chunks, index)
+    val decoded = newLabel()
+
+    if (cursor.latin1 != null) {
+      // Packed strings are Latin-1 and the others are not, so neither needs a guess:
+      //   if (latin1 != 0) { bytes[i] = (byte) c; new String(bytes, StandardCharsets.ISO_8859_1) }
+      val utf16 = newLabel()
+      loadLocal(cursor.latin1)
+      ifZCmp(GeneratorAdapter.EQ, utf16)
+      loadLocal(cursor.length)
+      newArray(Type.BYTE_TYPE)
+      val bytes = newLocal(BYTE_ARRAY_TYPE)
+      storeLocal(bytes)
+      decodePackedCharsAt(cursor) { i, pushChar ->
+        loadLocal(bytes)
+        loadLocal(i)
+        pushChar()
+        cast(Type.INT_TYPE, Type.BYTE_TYPE)
+        arrayStore(Type.BYTE_TYPE)
+      }
+      newLatin1String(bytes)
+      goTo(decoded)
+
+      // else new String(chars)
+      mark(utf16)
+      copyPlaintextStringAt(cursor, decoded)
+      loadLocal(cursor.length)
+      newArray(Type.CHAR_TYPE)
+      val chars = newLocal(CHAR_ARRAY_TYPE)
+      storeLocal(chars)
+      decodeUnitsAt(cursor) { i, pushChar ->
+        loadLocal(chars)
+        loadLocal(i)
+        pushChar()
+        arrayStore(Type.CHAR_TYPE)
+      }
       newInstance(STRING_TYPE)
       dup()
       loadLocal(chars)
       invokeConstructor(STRING_TYPE, Method("<init>", "([C)V"))
-      returnValue()
+      mark(decoded)
+      return
+    }
+
+    copyPlaintextStringAt(cursor, decoded)
+
+    // Most strings are Latin-1, so they are decoded into bytes first. On compact strings JVMs
+    // new String(bytes, ISO_8859_1) keeps the array as is instead of compressing a char[].
+    //   byte[] bytes = new byte[length]
+    loadLocal(cursor.length)
+    newArray(Type.BYTE_TYPE)
+    val bytes = newLocal(BYTE_ARRAY_TYPE)
+    storeLocal(bytes)
+
+    // char c = key; bytes[i] = (byte) c; if (c >= 0x100) goto widen
+    val c = newLocal(Type.INT_TYPE)
+    val widen = newLabel()
+    var stop = -1
+    decodeUnitsAt(cursor) { i, pushChar ->
+      stop = i
+      pushChar()
+      storeLocal(c)
+      loadLocal(bytes)
+      loadLocal(i)
+      loadLocal(c)
+      cast(Type.INT_TYPE, Type.BYTE_TYPE)
+      arrayStore(Type.BYTE_TYPE)
+      loadLocal(c)
+      push(0x100)
+      ifICmp(GeneratorAdapter.GE, widen)
+    }
+
+    newLatin1String(bytes)
+    goTo(decoded)
+
+    // The first unit past Latin-1 is at stop, widen what was decoded so far and go on in UTF-16:
+    //   char[] chars = new char[length]
+    //   for (int j = 0; j < stop; j++) chars[j] = (char) (bytes[j] & 0xff)
+    //   chars[stop++] = c; offset++
+    mark(widen)
+    loadLocal(cursor.length)
+    newArray(Type.CHAR_TYPE)
+    val chars = newLocal(CHAR_ARRAY_TYPE)
+    storeLocal(chars)
+    val j = newLocal(Type.INT_TYPE)
+    push(0)
+    storeLocal(j)
+    val copyStart = mark()
+    val copyEnd = newLabel()
+    loadLocal(j)
+    loadLocal(stop)
+    ifICmp(GeneratorAdapter.GE, copyEnd)
+    loadLocal(chars)
+    loadLocal(j)
+    loadLocal(bytes)
+    loadLocal(j)
+    arrayLoad(Type.BYTE_TYPE)
+    push(0xff)
+    math(GeneratorAdapter.AND, Type.INT_TYPE)
+    cast(Type.INT_TYPE, Type.CHAR_TYPE)
+    arrayStore(Type.CHAR_TYPE)
+    iinc(j, 1)
+    goTo(copyStart)
+    mark(copyEnd)
+    loadLocal(chars)
+    loadLocal(stop)
+    loadLocal(c)
+    arrayStore(Type.CHAR_TYPE)
+    iinc(stop, 1)
+    iinc(cursor.offset, 1)
+
+    // chars[i] = (char) key for the rest of the string
+    decodeUnitsAt(cursor, stop) { i, pushChar ->
+      loadLocal(chars)
+      loadLocal(i)
+      pushChar()
+      arrayStore(Type.CHAR_TYPE)
+    }
+
+    // new String(chars)
+    newInstance(STRING_TYPE)
+    dup()
+    loadLocal(chars)
+    invokeConstructor(STRING_TYPE, Method("<init>", "([C)V"))
+    mark(decoded)
+  }
+
+  // A plaintext UTF-16 string within one chunk is copied out directly, jumping to decoded:
+  //   if (length <= chunk.length - offset) new String(chunk, offset, length)
+  private fun GeneratorAdapter.copyPlaintextStringAt(cursor: DecodeCursor, decoded: Label) {
+    if (cursor.keys != null) {
+      return
+    }
+
+    val spansChunks = newLabel()
+    loadLocal(cursor.length)
+    loadLocal(cursor.chunk)
+    arrayLength()
+    loadLocal(cursor.offset)
+    math(GeneratorAdapter.SUB, Type.INT_TYPE)
+    ifICmp(GeneratorAdapter.GT, spansChunks)
+    newInstance(STRING_TYPE)
+    dup()
+    loadLocal(cursor.chunk)
+    loadLocal(cursor.offset)
+    loadLocal(cursor.length)
+    invokeConstructor(STRING_TYPE, Method("<init>", "([CII)V"))
+    goTo(decoded)
+    mark(spansChunks)
+  }
+
+  // new String(bytes, StandardCharsets.ISO_8859_1)
+  private fun GeneratorAdapter.newLatin1String(bytes: Int) {
+    newInstance(STRING_TYPE)
+    dup()
+    loadLocal(bytes)
+    getStatic(STANDARD_CHARSETS_TYPE, "ISO_8859_1", CHARSET_TYPE)
+    invokeConstructor(STRING_TYPE, METHOD_STRING_BYTES_CHARSET_CONSTRUCTOR)
+  }
+
+  // Decodes the length of the string at pool position index. Returns the cursor positioned at
+  // its first character, with keys covering the whole string unless chunks are decrypted already.
+  private fun GeneratorAdapter.beginDecodeAt(chunks: Int, index: Int): DecodeCursor {
+    val maxChunkLength = DeobfuscatorHelper.MAX_CHUNK_LENGTH
+
+    // int chunkIndex = index / MAX_CHUNK_LENGTH
+    loadLocal(index)
+    push(maxChunkLength)
+    math(GeneratorAdapter.DIV, Type.INT_TYPE)
+    val chunkIndex = newLocal(Type.INT_TYPE)
+    storeLocal(chunkIndex)
+
+    // int offset = index - chunkIndex * MAX_CHUNK_LENGTH
+    loadLocal(index)
+    loadLocal(chunkIndex)
+    push(maxChunkLength)
+    math(GeneratorAdapter.MUL, Type.INT_TYPE)
+    math(GeneratorAdapter.SUB, Type.INT_TYPE)
+    val offset = newLocal(Type.INT_TYPE)
+    storeLocal(offset)
+
+    val chunk = newLocal(CHAR_ARRAY_TYPE)
+    loadChunkInto(chunks, chunkIndex, chunk)
+
+    if (hasPlaintextChunks) {
+      // int length = chunk[offset++]
+      loadLocal(chunk)
+      loadLocal(offset)
+      arrayLoad(Type.CHAR_TYPE)
+      val length = newLocal(Type.INT_TYPE)
+      storeLocal(length)
+      iinc(offset, 1)
+      return DecodeCursor(chunks, chunkIndex, offset, chunk, null, length, splitLengthUnit(length))
+    }
+
+    // char[] keys = keystream.getKeys()
+    getStatic(deobfuscator.type.toAsmType(), "keystream", KEYSTREAM_TABLE_TYPE)
+    invokeVirtual(KEYSTREAM_TABLE_TYPE, METHOD_KEYSTREAM_TABLE_GET_KEYS)
+    val keys = newLocal(CHAR_ARRAY_TYPE)
+    storeLocal(keys)
+
+    // int length = keys[0] ^ chunk[offset++]
+    loadLocal(keys)
+    push(0)
+    arrayLoad(Type.CHAR_TYPE)
+    loadLocal(chunk)
+    loadLocal(offset)
+    arrayLoad(Type.CHAR_TYPE)
+    math(GeneratorAdapter.XOR, Type.INT_TYPE)
+    val length = newLocal(Type.INT_TYPE)
+    storeLocal(length)
+    iinc(offset, 1)
+    val latin1 = splitLengthUnit(length)
+
+    // if (length >= keys.length) keys = keystream.extend(length + 1)
+    // A packed string has fewer units than characters, so this covers it too
+    loadLocal(length)
+    loadLocal(keys)
+    arrayLength()
+    val covered = newLabel()
+    ifICmp(GeneratorAdapter.LT, covered)
+    getStatic(deobfuscator.type.toAsmType(), "keystream", KEYSTREAM_TABLE_TYPE)
+    loadLocal(length)
+    push(1)
+    math(GeneratorAdapter.ADD, Type.INT_TYPE)
+    invokeVirtual(KEYSTREAM_TABLE_TYPE, METHOD_KEYSTREAM_TABLE_EXTEND)
+    storeLocal(keys)
+    mark(covered)
+
+    return DecodeCursor(chunks, chunkIndex, offset, chunk, keys, length, latin1)
+  }
+
+  // With packed Latin-1 strings, splits the length unit in the length local into the Latin-1 flag
+  // and the length. Returns the flag local.
+  //   int latin1 = length & 1; length >>>= 1
+  private fun GeneratorAdapter.splitLengthUnit(length: Int): Int? {
+    if (!isPackedLatin1) {
+      return null
+    }
+
+    loadLocal(length)
+    push(1)
+    math(GeneratorAdapter.AND, Type.INT_TYPE)
+    val latin1 = newLocal(Type.INT_TYPE)
+    storeLocal(latin1)
+    loadLocal(length)
+    push(1)
+    math(GeneratorAdapter.USHR, Type.INT_TYPE)
+    storeLocal(length)
+    return latin1
+  }
+
+  // Decodes the characters of the string at the cursor. For every character, consume is called
+  // with the loop counter local and an emitter that pushes the decoded char. With packed Latin-1
+  // strings, consume is emitted once for each layout.
+  private fun GeneratorAdapter.decodeCharsAt(
+    cursor: DecodeCursor,
+    consume: (i: Int, pushChar: () -> Unit) -> Unit
+  ) {
+    if (cursor.latin1 == null) {
+      decodeUnitsAt(cursor, null, consume)
+      return
+    }
+
+    // if (latin1 != 0) packed loop else UTF-16 loop
+    val utf16 = newLabel()
+    val end = newLabel()
+    loadLocal(cursor.latin1)
+    ifZCmp(GeneratorAdapter.EQ, utf16)
+    decodePackedCharsAt(cursor, consume)
+    goTo(end)
+    mark(utf16)
+    decodeUnitsAt(cursor, null, consume)
+    mark(end)
+  }
+
+  // Decodes the characters of a string stored one per unit at the cursor. For every character,
+  // consume is called with the loop counter local and an emitter that pushes the decoded char.
+  // The loop starts at the character index in the from local, if given, with the cursor
+  // positioned at it.
+  private fun GeneratorAdapter.decodeUnitsAt(
+    cursor: DecodeCursor,
+    from: Int? = null,
+    consume: (i: Int, pushChar: () -> Unit) -> Unit
+  ) {
+    val (chunks, chunkIndex, offset, chunk, keys, length) = cursor
+
+    // for (int i = from; i < length; i++)
+    val i = from ?: newLocal(Type.INT_TYPE).also {
+      push(0)
+      storeLocal(it)
+    }
+    val loopStart = mark()
+    loadLocal(i)
+    loadLocal(length)
+    val loopEnd = newLabel()
+    ifICmp(GeneratorAdapter.GE, loopEnd)
+
+    // if (offset == MAX_CHUNK_LENGTH) { chunk = chunks.get(++chunkIndex); offset = 0; }
+    loadLocal(offset)
+    push(DeobfuscatorHelper.MAX_CHUNK_LENGTH)
+    val sameChunk = newLabel()
+    ifICmp(GeneratorAdapter.NE, sameChunk)
+    iinc(chunkIndex, 1)
+    push(0)
+    storeLocal(offset)
+    loadChunkInto(chunks, chunkIndex, chunk)
+    mark(sameChunk)
+
+    // (char) (keys[i + 1] ^ chunk[offset++]), or chunk[offset++] for a decrypted chunk
+    consume(i) {
+      if (keys != null) {
+        loadLocal(keys)
+        loadLocal(i)
+        push(1)
+        math(GeneratorAdapter.ADD, Type.INT_TYPE)
+        arrayLoad(Type.CHAR_TYPE)
+      }
+      loadLocal(chunk)
+      loadLocal(offset)
+      arrayLoad(Type.CHAR_TYPE)
+      if (keys != null) {
+        math(GeneratorAdapter.XOR, Type.INT_TYPE)
+        cast(Type.INT_TYPE, Type.CHAR_TYPE)
+      }
+    }
+    iinc(offset, 1)
+
+    // i++
+    iinc(i, 1)
+    goTo(loopStart)
+
+    mark(loopEnd)
+  }
+
+  // Decodes the characters of a packed Latin-1 string at the cursor, two per unit with the first
+  // one in the high byte. For every character, consume is called with the loop counter local and
+  // an emitter that pushes the decoded char.
+  private fun GeneratorAdapter.decodePackedCharsAt(
+    cursor: DecodeCursor,
+    consume: (i: Int, pushChar: () -> Unit) -> Unit
+  ) {
+    val (chunks, chunkIndex, offset, chunk, keys, length) = cursor
+
+    // for (int i = 0; i < length; i++)
+    val i = newLocal(Type.INT_TYPE)
+    push(0)
+    storeLocal(i)
+    val unit = newLocal(Type.INT_TYPE)
+    push(0)
+    storeLocal(unit)
+    val c = newLocal(Type.INT_TYPE)
+    val loopStart = mark()
+    loadLocal(i)
+    loadLocal(length)
+    val loopEnd = newLabel()
+    ifICmp(GeneratorAdapter.GE, loopEnd)
+
+    // if ((i & 1) != 0) { c = unit & 0xff; } else {
+    val highByte = newLabel()
+    val charReady = newLabel()
+    loadLocal(i)
+    push(1)
+    math(GeneratorAdapter.AND, Type.INT_TYPE)
+    ifZCmp(GeneratorAdapter.EQ, highByte)
+    loadLocal(unit)
+    push(0xff)
+    math(GeneratorAdapter.AND, Type.INT_TYPE)
+    storeLocal(c)
+    goTo(charReady)
+    mark(highByte)
+
+    //   if (offset == MAX_CHUNK_LENGTH) { chunk = chunks.get(++chunkIndex); offset = 0; }
+    loadLocal(offset)
+    push(DeobfuscatorHelper.MAX_CHUNK_LENGTH)
+    val sameChunk = newLabel()
+    ifICmp(GeneratorAdapter.NE, sameChunk)
+    iinc(chunkIndex, 1)
+    push(0)
+    storeLocal(offset)
+    loadChunkInto(chunks, chunkIndex, chunk)
+    mark(sameChunk)
+
+    //   unit = keys[(i >> 1) + 1] ^ chunk[offset++], or chunk[offset++] for a decrypted chunk
+    if (keys != null) {
+      loadLocal(keys)
+      loadLocal(i)
+      push(1)
+      math(GeneratorAdapter.SHR, Type.INT_TYPE)
+      push(1)
+      math(GeneratorAdapter.ADD, Type.INT_TYPE)
+      arrayLoad(Type.CHAR_TYPE)
     }
+    loadLocal(chunk)
+    loadLocal(offset)
+    arrayLoad(Type.CHAR_TYPE)
+    if (keys != null) {
+      math(GeneratorAdapter.XOR, Type.INT_TYPE)
+    }
+    storeLocal(unit)
+    iinc(offset, 1)
+
+    //   c = unit >>> 8 }
+    loadLocal(unit)
+    push(8)
+    math(GeneratorAdapter.USHR, Type.INT_TYPE)
+    storeLocal(c)
+    mark(charReady)
+
+    consume(i) {
+      loadLocal(c)
+    }
+
+    // i++
+    iinc(i, 1)
+    goTo(loopStart)
+
+    mark(loopEnd)
+  }
+
+  // chunk = chunks.get(chunkIndex)
+  private fun GeneratorAdapter.loadChunkInto(chunks: Int, chunkIndex: Int, chunk: Int) {
+    loadLocal(chunks)
+    loadLocal(chunkIndex)
+    invokeVirtual(CHUNK_TABLE_TYPE, METHOD_CHUNK_TABLE_GET)
+    storeLocal(chunk)
   }
 
+  private data class DecodeCursor(
+    val chunks: Int,
+    val chunkIndex: Int,
+    val offset: Int,
+    val chunk: Int,
+    val keys: Int?,
+    val length: Int,
+    val latin1: Int?
+  )
+
   companion object {
     private val METHOD_DEFAULT_CONSTRUCTOR = Method("<init>", "()V")
-    private val METHOD_LOAD_CHUNK = Method("loadChunk", "(I)Ljava/lang/String;")
-    private val METHOD_GET_CHAR_AT = Method("getCharAt", "(IJ)J")
-    private val METHOD_LOAD_CHUNKS_FROM_BYTE_ARRAY = Method("loadChunksFromByteArray", "([BJ)[Ljava/lang/String;")
-    private val METHOD_BASE64_DECODE = Method("decode", "(Ljava/lang/String;)[B")
-    private val METHOD_RANDOM_SEED = Method("seed", "(J)J")
-    private val METHOD_RANDOM_NEXT = Method("next", "(J)J")
+    private val METHOD_STATIC_INITIALIZER = Method("<clinit>", "()V")
+    private val METHOD_DECODE = Method("decode", "(J)Ljava/lang/String;")
+    private val METHOD_GET_STRINGS = Method("getStrings", "([J[Ljava/lang/String;)V")
+    private val METHOD_LENGTH = Method("length", "(J)I")
+    private val METHOD_GET_CHARS = Method("getChars", "(J[CI)I")
+    private val METHOD_APPEND_TO = Method("appendTo", "(JLjava/lang/Appendable;)V")
+    private val METHOD_APPENDABLE_APPEND_CHAR = Method("append", "(C)Ljava/lang/Appendable;")
+    private val METHOD_PREWARM_EXECUTOR =
+      Method("prewarm", "(Ljava/util/concurrent/Executor;)Ljava/util/concurrent/Future;")
+    private val METHOD_PREWARM_INDICES = Method("prewarm", "([I)Ljava/util/concurrent/Future;")
+    private val METHOD_TRIM_MEMORY = Method("trimMemory", "(I)V")
+    private val METHOD_GET_CACHE_HIT_COUNT = Method("getCacheHitCount", "()J")
+    private val METHOD_GET_CACHE_MISS_COUNT = Method("getCacheMissCount", "()J")
+    private val METHOD_CHUNK_TABLE_CONSTRUCTOR = Method("<init>", "(ILcom/androidacy/lsparanoid/ChunkLoader;)V")
+    private val METHOD_CHUNK_TABLE_SOFT_CONSTRUCTOR = Method("<init>", "(ILcom/androidacy/lsparanoid/ChunkLoader;Z)V")
+    private val METHOD_CHUNK_TABLE_GET = Method("get", "(I)[C")
+    private val METHOD_CHUNK_TABLE_TRIM = Method("trim", "(I)Z")
+    private val METHOD_CHUNK_TABLE_PREWARM_EXECUTOR =
+      Method("prewarm", "(Ljava/util/concurrent/Executor;[I)Ljava/util/concurrent/Future;")
+    private val METHOD_CHUNK_TABLE_PREWARM_INDICES = Method("prewarm", "([I)Ljava/util/concurrent/Future;")
+    private val METHOD_CHUNK_TABLE_COMPLETED_PREWARM = Method("completedPrewarm", "()Ljava/util/concurrent/Future;")
+    private val METHOD_DECODE_CACHE_CONSTRUCTOR = Method("<init>", "(I)V")
+    private val METHOD_DECODE_CACHE_GET = Method("get", "(J)Ljava/lang/String;")
+    private val METHOD_DECODE_CACHE_PUT = Method("put", "(JLjava/lang/String;)V")
+    private val METHOD_DECODE_CACHE_CLEAR = Method("clear", "()V")
+    private val METHOD_INTERN_TABLE_GET = Method("get", "(J)Ljava/lang/String;")
+    private val METHOD_INTERN_TABLE_INTERN = Method("intern", "(JLjava/lang/String;)Ljava/lang/String;")
+    private val METHOD_DECODE_CACHE_GET_HIT_COUNT = Method("getHitCount", "()J")
+    private val METHOD_DECODE_CACHE_GET_MISS_COUNT = Method("getMissCount", "()J")
+    private val METHOD_LOAD_CHUNK = Method("loadChunk", "(I)[C")
+    private val METHOD_CHUNK_LOAD = Method("load", "()[C")
+    private val METHOD_LOAD_CHUNK_FROM_POOL_RESOURCE =
+      Method("loadChunkFromPoolResource", "(Ljava/lang/Class;Ljava/lang/String;I)[C")
+    private val METHOD_LOAD_CHUNKS_FROM_POOL_RESOURCE =
+      Method("loadChunksFromPoolResource", "(Ljava/lang/Class;Ljava/lang/String;)[[C")
+    private val METHOD_LOAD_CHUNK_FROM_LONG_ARRAY = Method("loadChunkFromLongArray", "([JI)[C")
+    private val METHOD_INFLATE_CHUNK =
+      Method("inflateChunk", "([CIILcom/androidacy/lsparanoid/PoolCipher;I)[C")
+    private val METHOD_BASE64_DECODE_TO_CHARS = Method("decodeToChars", "(Ljava/lang/String;[CI)I")
+    private val METHOD_TO_CHAR_ARRAY = Method("toCharArray", "()[C")
+    private val METHOD_STRING_BYTES_CHARSET_CONSTRUCTOR = Method("<init>", "([BLjava/nio/charset/Charset;)V")
+    private val METHOD_KEYSTREAM_TABLE_CONSTRUCTOR = Method("<init>", "(IZZ)V")
+    private val METHOD_KEYSTREAM_TABLE_GET_INDEX_MASK = Method("getIndexMask", "()J")
+    private val METHOD_KEYSTREAM_TABLE_GET_KEYS = Method("getKeys", "()[C")
+    private val METHOD_KEYSTREAM_TABLE_EXTEND = Method("extend", "(I)[C")
+    private val METHOD_KEYSTREAM_TABLE_DECRYPT_CHUNK = Method("decryptChunk", "([CII)[C")
+    private val METHOD_POOL_CIPHER_CONSTRUCTOR = Method("<init>", "(I)V")
+    private val METHOD_POOL_CIPHER_DECRYPT_CHUNK = Method("decryptChunk", "([CI)[C")
 
     private val OBJECT_TYPE = Type.getObjectType("java/lang/Object")
     private val STRING_TYPE = Type.getType(String::class.java)
-    private val STRING_ARRAY_TYPE = Type.getType(Array<String>::class.java)
+    private val CHARSET_TYPE = Type.getObjectType("java/nio/charset/Charset")
+    private val STANDARD_CHARSETS_TYPE = Type.getObjectType("java/nio/charset/StandardCharsets")
+    private val APPENDABLE_TYPE = Type.getObjectType("java/lang/Appendable")
+    private val IO_EXCEPTION_TYPE = Type.getObjectType("java/io/IOException")
+    private val INDEX_OUT_OF_BOUNDS_EXCEPTION_TYPE = Type.getObjectType("java/lang/IndexOutOfBoundsException")
+    private val CHAR_ARRAY_TYPE = Type.getType(CharArray::class.java)
+    private val BYTE_ARRAY_TYPE = Type.getType(ByteArray::class.java)
+    private val INT_ARRAY_TYPE = Type.getType(IntArray::class.java)
+    private val CHUNK_ARRAY_TYPE = Type.getType(Array<CharArray>::class.java)
     private val DEOBFUSCATOR_HELPER_TYPE = Type.getObjectType("com/androidacy/lsparanoid/DeobfuscatorHelper")
-    private val RANDOM_HELPER_TYPE = Type.getObjectType("com/androidacy/lsparanoid/RandomHelper")
     private val BASE64_DECODER_TYPE = Type.getObjectType("com/androidacy/lsparanoid/Base64Decoder")
+    private val CHUNK_LOADER_TYPE = Type.getObjectType("com/androidacy/lsparanoid/ChunkLoader")
+    private val CHUNK_TABLE_TYPE = Type.getObjectType("com/androidacy/lsparanoid/ChunkTable")
+    private val DECODE_CACHE_TYPE = Type.getObjectType("com/androidacy/lsparanoid/DecodeCache")
+    private val INTERN_TABLE_TYPE = Type.getObjectType("com/androidacy/lsparanoid/InternTable")
+    private val KEYSTREAM_TABLE_TYPE = Type.getObjectType("com/androidacy/lsparanoid/KeystreamTable")
+    private val POOL_CIPHER_TYPE = Type.getObjectType("com/androidacy/lsparanoid/PoolCipher")
   }
 }
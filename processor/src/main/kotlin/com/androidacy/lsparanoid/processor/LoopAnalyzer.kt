@@ -0,0 +1,232 @@
+/*
+ * Copyright 2023 LSPosed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.androidacy.lsparanoid.processor
+
+import org.objectweb.asm.Opcodes
+import org.objectweb.asm.tree.AbstractInsnNode
+import org.objectweb.asm.tree.JumpInsnNode
+import org.objectweb.asm.tree.LabelNode
+import org.objectweb.asm.tree.LookupSwitchInsnNode
+import org.objectweb.asm.tree.MethodNode
+import org.objectweb.asm.tree.TableSwitchInsnNode
+import java.util.BitSet
+
+/**
+ * Finds the instructions of a method that belong to a natural loop.
+ *
+ * The method is split into basic blocks and dominators are computed over its control-flow graph,
+ * including exception edges. Every back edge, an edge whose target dominates its source, adds the
+ * blocks of its natural loop. Irreducible cycles have no dominating header and are not reported.
+ */
+object LoopAnalyzer {
+
+  fun findInstructionsInLoops(method: MethodNode): Set<AbstractInsnNode> {
+    val instructions = method.instructions
+    val size = instructions.size()
+    if (size == 0) {
+      return emptySet()
+    }
+
+    // Split into basic blocks: a block starts at a label that follows code, or after a branch
+    val blockOf = IntArray(size)
+    var blockCount = 0
+    var hasCode = false
+    var endsBlock = true
+    for (i in 0 until size) {
+      val insn = instructions[i]
+      if (endsBlock || (insn is LabelNode && hasCode)) {
+        blockCount++
+        hasCode = false
+        endsBlock = false
+      }
+      blockOf[i] = blockCount - 1
+      if (insn.opcode >= 0) {
+        hasCode = true
+        endsBlock = insn.isBranch()
+      }
+    }
+
+    val successors = Array(blockCount) { LinkedHashSet<Int>() }
+    var lastCode: AbstractInsnNode? = null
+    for (i in 0 until size) {
+      val insn = instructions[i]
+      val block = blockOf[i]
+      when (insn) {
+        is JumpInsnNode -> successors[block].add(blockOf[instructions.indexOf(insn.label)])
+        is TableSwitchInsnNode -> (insn.labels + insn.dflt).forEach {
+          successors[block].add(blockOf[instructions.indexOf(it)])
+        }
+        is LookupSwitchInsnNode -> (insn.labels + insn.dflt).forEach {
+          successors[block].add(blockOf[instructions.indexOf(it)])
+        }
+      }
+      if (insn.opcode >= 0) {
+        lastCode = insn
+      }
+      val isLastInBlock = i == size - 1 || blockOf[i + 1] != block
+      if (isLastInBlock) {
+        if (block + 1 < blockCount && lastCode?.canFallThrough() != false) {
+          successors[block].add(block + 1)
+        }
+        lastCode = null
+      }
+    }
+    for (tryCatch in method.tryCatchBlocks) {
+      val handler = blockOf[instructions.indexOf(tryCatch.handler)]
+      for (i in instructions.indexOf(tryCatch.start) until instructions.indexOf(tryCatch.end)) {
+        successors[blockOf[i]].add(handler)
+      }
+    }
+
+    val order = computeReversePostOrder(successors)
+    val orderOf = IntArray(blockCount) { -1 }
+    order.forEachIndexed { position, block -> orderOf[block] = position }
+    val predecessors = Array(blockCount) { ArrayList<Int>() }
+    for (block in order) {
+      for (successor in successors[block]) {
+        predecessors[successor].add(block)
+      }
+    }
+    val dominators = computeImmediateDominators(order, orderOf, predecessors)
+
+    val loopBlocks = BitSet(blockCount)
+    for (source in order) {
+      for (header in successors[source]) {
+        if (dominates(header, source, dominators)) {
+          collectNaturalLoop(header, source, predecessors, loopBlocks)
+        }
+      }
+    }
+    if (loopBlocks.isEmpty) {
+      return emptySet()
+    }
+
+    val result = HashSet<AbstractInsnNode>()
+    for (i in 0 until size) {
+      if (loopBlocks[blockOf[i]]) {
+        result.add(instructions[i])
+      }
+    }
+    return result
+  }
+
+  private fun computeReversePostOrder(successors: Array<LinkedHashSet<Int>>): IntArray {
+    val visited = BitSet(successors.size)
+    val postOrder = ArrayList<Int>(successors.size)
+    val stack = ArrayDeque<Pair<Int, Iterator<Int>>>()
+    visited.set(0)
+    stack.addLast(0 to successors[0].iterator())
+    while (stack.isNotEmpty()) {
+      val (block, iterator) = stack.last()
+      if (iterator.hasNext()) {
+        val successor = iterator.next()
+        if (!visited[successor]) {
+          visited.set(successor)
+          stack.addLast(successor to successors[successor].iterator())
+        }
+      } else {
+        stack.removeLast()
+        postOrder.add(block)
+      }
+    }
+    return postOrder.asReversed().toIntArray()
+  }
+
+  // Cooper, Harvey and Kennedy, "A Simple, Fast Dominance Algorithm"
+  private fun computeImmediateDominators(
+    order: IntArray,
+    orderOf: IntArray,
+    predecessors: Array<ArrayList<Int>>
+  ): IntArray {
+    val dominators = IntArray(orderOf.size) { -1 }
+    val entry = order[0]
+    dominators[entry] = entry
+    var changed = true
+    while (changed) {
+      changed = false
+      for (position in 1 until order.size) {
+        val block = order[position]
+        var dominator = -1
+        for (predecessor in predecessors[block]) {
+          if (dominators[predecessor] == -1) {
+            continue
+          }
+          dominator = if (dominator == -1) predecessor else {
+            var left = predecessor
+            var right = dominator
+            while (left != right) {
+              while (orderOf[left] > orderOf[right]) left = dominators[left]
+              while (orderOf[right] > orderOf[left]) right = dominators[right]
+            }
+            left
+          }
+        }
+        if (dominators[block] != dominator) {
+          dominators[block] = dominator
+          changed = true
+        }
+      }
+    }
+    return dominators
+  }
+
+  private fun dominates(dominator: Int, block: Int, dominators: IntArray): Boolean {
+    var current = block
+    while (true) {
+      if (current == dominator) {
+        return true
+      }
+      val next = dominators[current]
+      if (next == current || next == -1) {
+        return false
+      }
+      current = next
+    }
+  }
+
+  private fun collectNaturalLoop(
+    header: Int,
+    source: Int,
+    predecessors: Array<ArrayList<Int>>,
+    loopBlocks: BitSet
+  ) {
+    val body = BitSet()
+    body.set(header)
+    val stack = ArrayDeque<Int>()
+    stack.addLast(source)
+    while (stack.isNotEmpty()) {
+      val block = stack.removeLast()
+      if (!body[block]) {
+        body.set(block)
+        predecessors[block].forEach { stack.addLast(it) }
+      }
+    }
+    loopBlocks.or(body)
+  }
+
+  private fun AbstractInsnNode.isBranch(): Boolean {
+    return this is JumpInsnNode || this is TableSwitchInsnNode || this is LookupSwitchInsnNode || !canFallThrough()
+  }
+
+  private fun AbstractInsnNode.canFallThrough(): Boolean {
+    return when (opcode) {
+      Opcodes.GOTO, Opcodes.TABLESWITCH, Opcodes.LOOKUPSWITCH, Opcodes.ATHROW, Opcodes.RET -> false
+      in Opcodes.IRETURN..Opcodes.RETURN -> false
+      else -> true
+    }
+  }
+}
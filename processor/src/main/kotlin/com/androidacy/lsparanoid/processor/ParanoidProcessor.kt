@@ -24,10 +24,13 @@ import com.joom.grip.mirrors.getObjectTypeByInternalName
 import com.androidacy.lsparanoid.processor.commons.closeQuietly
 import com.androidacy.lsparanoid.processor.commons.createFile
 import com.androidacy.lsparanoid.processor.logging.getLogger
+import com.androidacy.lsparanoid.processor.model.ChunkStorage
 import com.androidacy.lsparanoid.processor.model.Deobfuscator
+import com.androidacy.lsparanoid.processor.model.DeobfuscatorOptions
 import org.objectweb.asm.Opcodes
 import org.objectweb.asm.Type
 import org.objectweb.asm.commons.Method
+import java.nio.file.Files
 import java.nio.file.Path
 import java.util.jar.JarOutputStream
 
@@ -38,7 +41,10 @@ class ParanoidProcessor(
     private val output: JarOutputStream,
     private val asmApi: Int = Opcodes.ASM9,
     private val projectName: String,
-    private val classFilter: ((className: String) -> Boolean)?
+    private val classFilter: ((className: String) -> Boolean)?,
+    private val options: DeobfuscatorOptions = DeobfuscatorOptions(),
+    private val resourceOutput: Path? = null,
+    private val reportOutput: Path? = null
 ) {
 
     private val logger = getLogger()
@@ -48,7 +54,7 @@ class ParanoidProcessor(
 
     fun process() {
         dumpConfiguration()
-        StringRegistryImpl(seed).use { stringRegistry ->
+        StringRegistryImpl(seed, options.poolFormat, options.packLatin1).use { stringRegistry ->
             val analysisResult = Analyzer(grip, classFilter).analyze(sortedInputs)
             analysisResult.dump()
 
@@ -66,19 +72,36 @@ class ParanoidProcessor(
                     analysisResult,
                     grip.classRegistry,
                     grip.fileRegistry,
-                    asmApi
+                    asmApi,
+                    options.cacheMode,
+                    options.useConstantDynamic
                 ).copyAndPatchClasses(sources, output)
+                // A pool resource is compressed with the APK already
+                val compressor = if (options.compressChunks && options.chunkStorage != ChunkStorage.RESOURCE) {
+                    ChunkCompressor(stringRegistry, options.poolFormat, options.packLatin1)
+                } else {
+                    null
+                }
                 val deobfuscatorClasses =
                     DeobfuscatorGenerator(
                         deobfuscator,
                         stringRegistry,
                         grip.classRegistry,
-                        grip.fileRegistry
+                        grip.fileRegistry,
+                        options,
+                        compressor
                     ).generateDeobfuscatorClasses()
+                compressor?.let { writeCompressionReport(it.getReport()) }
 
-                // Write all generated classes (main + chunk classes)
-                deobfuscatorClasses.forEach { (className, classBytes) ->
-                    output.createFile(className, classBytes)
+                // Write all generated classes (main + chunk classes) and the pool resource, if any
+                deobfuscatorClasses.forEach { (fileName, fileBytes) ->
+                    if (resourceOutput != null && !fileName.endsWith(".class")) {
+                        val file = resourceOutput.resolve(fileName)
+                        Files.createDirectories(file.parent)
+                        Files.write(file, fileBytes)
+                    } else {
+                        output.createFile(fileName, fileBytes)
+                    }
                 }
             } finally {
                 sources.forEach { source ->
@@ -88,10 +111,20 @@ class ParanoidProcessor(
         }
     }
 
+    private fun writeCompressionReport(report: String) {
+        logger.info("{}", report)
+        if (reportOutput != null) {
+            Files.createDirectories(reportOutput.toAbsolutePath().parent)
+            Files.write(reportOutput, report.toByteArray())
+        }
+    }
+
     private fun dumpConfiguration() {
         logger.info("Starting ParanoidProcessor:")
         logger.info("  inputs        = {}", inputs)
         logger.info("  output        = {}", output)
+        logger.info("  resources     = {}", resourceOutput)
+        logger.info("  options       = {}", options)
     }
 
     private fun AnalysisResult.dump() {
@@ -25,6 +25,7 @@ import com.joom.grip.mirrors.getObjectTypeByInternalName
 import com.androidacy.lsparanoid.processor.commons.createDirectory
 import com.androidacy.lsparanoid.processor.commons.createFile
 import com.androidacy.lsparanoid.processor.logging.getLogger
+import com.androidacy.lsparanoid.processor.model.CacheMode
 import com.androidacy.lsparanoid.processor.model.Deobfuscator
 import org.objectweb.asm.ClassReader
 import org.objectweb.asm.ClassVisitor
@@ -39,6 +40,8 @@ class Patcher(
     private val classRegistry: ClassRegistry,
     private val fileRegistry: FileRegistry,
     private val asmApi: Int,
+    private val cacheMode: CacheMode = CacheMode.NONE,
+    private val useConstantDynamic: Boolean = false,
 ) {
 
     private val logger = getLogger()
@@ -110,6 +113,8 @@ class Patcher(
                     StringLiteralsClassPatcher(
                         deobfuscator,
                         stringRegistry,
+                        cacheMode,
+                        useConstantDynamic,
                         asmApi,
                         it
                     )
@@ -117,6 +122,8 @@ class Patcher(
                 .wrapIf(configuration != null && shouldObfuscateLiterals) {
                     StringConstantsClassPatcher(
                         configuration!!,
+                        deobfuscator,
+                        stringRegistry,
                         asmApi,
                         it
                     )
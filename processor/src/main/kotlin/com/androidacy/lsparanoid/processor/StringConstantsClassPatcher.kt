@@ -19,6 +19,7 @@ package com.androidacy.lsparanoid.processor
 
 import com.joom.grip.mirrors.toAsmType
 import com.androidacy.lsparanoid.processor.logging.getLogger
+import com.androidacy.lsparanoid.processor.model.Deobfuscator
 import org.objectweb.asm.ClassVisitor
 import org.objectweb.asm.FieldVisitor
 import org.objectweb.asm.MethodVisitor
@@ -30,6 +31,8 @@ import org.objectweb.asm.commons.Method
 
 class StringConstantsClassPatcher(
   private val configuration: ClassConfiguration,
+  private val deobfuscator: Deobfuscator,
+  private val stringRegistry: StringRegistry,
   asmApi: Int,
   delegate: ClassVisitor,
 ) : ClassVisitor(asmApi, delegate) {
@@ -95,8 +98,49 @@ class StringConstantsClassPatcher(
           logger.info("{}:", configuration.container.internalName)
           logger.info("  Patching <clinit>...")
           super.visitCode()
-          for ((field, value) in configuration.constantStringsByFieldName) {
-            push(value)
+          if (configuration.constantStringsByFieldName.size < 2) {
+            for ((field, value) in configuration.constantStringsByFieldName) {
+              push(value)
+              putStatic(configuration.container.toAsmType(), field, STRING_TYPE)
+            }
+          } else {
+            decodeConstantsInBatch()
+          }
+        }
+
+        // long[] ids = { ... }; String[] values = new String[ids.length];
+        // Deobfuscator.getStrings(ids, values); FIELD_0 = values[0]; ...
+        private fun decodeConstantsInBatch() {
+          // Decode in pool order, so chunks are walked sequentially
+          val constants = configuration.constantStringsByFieldName.map { (field, value) ->
+            logger.info("  Obfuscating string constant {}: \"{}\"", field, value)
+            field to stringRegistry.registerString(value)
+          }.sortedBy { (_, id) -> stringRegistry.getIndex(id) }
+
+          push(constants.size)
+          newArray(Type.LONG_TYPE)
+          constants.forEachIndexed { index, (_, id) ->
+            dup()
+            push(index)
+            push(id)
+            arrayStore(Type.LONG_TYPE)
+          }
+          val ids = newLocal(LONG_ARRAY_TYPE)
+          storeLocal(ids)
+
+          push(constants.size)
+          newArray(STRING_TYPE)
+          val values = newLocal(STRING_ARRAY_TYPE)
+          storeLocal(values)
+
+          loadLocal(ids)
+          loadLocal(values)
+          invokeStatic(deobfuscator.type.toAsmType(), METHOD_GET_STRINGS)
+
+          constants.forEachIndexed { index, (field, _) ->
+            loadLocal(values)
+            push(index)
+            arrayLoad(STRING_TYPE)
             putStatic(configuration.container.toAsmType(), field, STRING_TYPE)
           }
         }
@@ -109,5 +153,8 @@ class StringConstantsClassPatcher(
   companion object {
     private val STATIC_INITIALIZER_METHOD = Method("<clinit>", Type.VOID_TYPE, arrayOf())
     private val STRING_TYPE = Type.getType(String::class.java)
+    private val STRING_ARRAY_TYPE = Type.getType(Array<String>::class.java)
+    private val LONG_ARRAY_TYPE = Type.getType(LongArray::class.java)
+    private val METHOD_GET_STRINGS = Method("getStrings", Type.VOID_TYPE, arrayOf(LONG_ARRAY_TYPE, STRING_ARRAY_TYPE))
   }
 }
@@ -19,14 +19,28 @@ package com.androidacy.lsparanoid.processor
 
 import com.joom.grip.mirrors.toAsmType
 import com.androidacy.lsparanoid.processor.logging.getLogger
+import com.androidacy.lsparanoid.processor.model.CacheMode
 import com.androidacy.lsparanoid.processor.model.Deobfuscator
 import org.objectweb.asm.ClassVisitor
+import org.objectweb.asm.ConstantDynamic
+import org.objectweb.asm.Handle
 import org.objectweb.asm.MethodVisitor
+import org.objectweb.asm.Opcodes
+import org.objectweb.asm.Type
 import org.objectweb.asm.commons.GeneratorAdapter
+import org.objectweb.asm.tree.FieldInsnNode
+import org.objectweb.asm.tree.InsnList
+import org.objectweb.asm.tree.InsnNode
+import org.objectweb.asm.tree.JumpInsnNode
+import org.objectweb.asm.tree.LabelNode
+import org.objectweb.asm.tree.LdcInsnNode
+import org.objectweb.asm.tree.MethodNode
 
 class StringLiteralsClassPatcher(
   private val deobfuscator: Deobfuscator,
   private val stringRegistry: StringRegistry,
+  private val cacheMode: CacheMode,
+  private val useConstantDynamic: Boolean,
   asmApi: Int,
   delegate: ClassVisitor,
 ) : ClassVisitor(asmApi, delegate) {
@@ -34,6 +48,9 @@ class StringLiteralsClassPatcher(
   private val logger = getLogger()
 
   private var className: String = ""
+  private var canCacheLiterals = false
+  private var canUseConstantDynamic = false
+  private val literalFieldsByString = mutableMapOf<String, String>()
 
   override fun visit(
     version: Int,
@@ -45,6 +62,10 @@ class StringLiteralsClassPatcher(
   ) {
     super.visit(version, access, name, signature, superName, interfaces)
     className = name
+    // CONSTANT_Dynamic and the ConstantBootstraps.invoke bootstrap need class file version 55 (Java 11) or newer
+    canUseConstantDynamic = useConstantDynamic && (version and 0xffff) >= Opcodes.V11
+    // Interface fields are implicitly final, so they cannot be initialized lazily
+    canCacheLiterals = !canUseConstantDynamic && cacheMode != CacheMode.NONE && access and Opcodes.ACC_INTERFACE == 0
   }
 
   override fun visitMethod(
@@ -55,6 +76,67 @@ class StringLiteralsClassPatcher(
     exceptions: Array<out String>?
   ): MethodVisitor {
     val visitor = super.visitMethod(access, name, desc, signature, exceptions)
+    val patcher = createLiteralsPatcher(visitor, access, name, desc)
+    if (!canCacheLiterals) {
+      return patcher
+    }
+
+    // Buffer the method so literals to cache can be found before it is patched
+    return object : MethodNode(api, access, name, desc, signature, exceptions?.let { arrayOf(*it) }) {
+      override fun visitEnd() {
+        cacheLiterals(this)
+        accept(patcher)
+      }
+    }
+  }
+
+  override fun visitEnd() {
+    for (field in literalFieldsByString.values) {
+      super.visitField(LITERAL_FIELD_ACCESS, field, STRING_DESCRIPTOR, null, null)?.visitEnd()
+    }
+    super.visitEnd()
+  }
+
+  // Replaces string literals with a lazily initialized static field, so the string is decoded
+  // once instead of on every execution:
+  //   String value = FIELD; if (value == null) { value = "literal"; FIELD = value; }
+  // The literal left in the slow path is then obfuscated like any other. Sites of the same
+  // literal in a class share the field. In LOOP mode only literals inside natural loops are
+  // cached, in CALL_SITE mode every literal outside of the static initializer is.
+  private fun cacheLiterals(method: MethodNode) {
+    val literals = method.instructions.filter { it is LdcInsnNode && it.cst is String }
+    if (literals.isEmpty()) {
+      return
+    }
+
+    // The static initializer runs once, so only its loops benefit from caching
+    val cachesEverySite = cacheMode == CacheMode.CALL_SITE && method.name != "<clinit>"
+    val instructionsInLoops = if (cachesEverySite) emptySet() else LoopAnalyzer.findInstructionsInLoops(method)
+    for (literal in literals) {
+      if (!cachesEverySite && literal !in instructionsInLoops) {
+        continue
+      }
+
+      val string = (literal as LdcInsnNode).cst as String
+      val field = literalFieldsByString.getOrPut(string) { LITERAL_FIELD_PREFIX + literalFieldsByString.size }
+      logger.info("{}.{}{}:", className, method.name, method.desc)
+      logger.info("  Caching string literal in {}: \"{}\"", field, string)
+      val initialized = LabelNode()
+      method.instructions.insertBefore(literal, InsnList().apply {
+        add(FieldInsnNode(Opcodes.GETSTATIC, className, field, STRING_DESCRIPTOR))
+        add(InsnNode(Opcodes.DUP))
+        add(JumpInsnNode(Opcodes.IFNONNULL, initialized))
+        add(InsnNode(Opcodes.POP))
+      })
+      method.instructions.insert(literal, InsnList().apply {
+        add(InsnNode(Opcodes.DUP))
+        add(FieldInsnNode(Opcodes.PUTSTATIC, className, field, STRING_DESCRIPTOR))
+        add(initialized)
+      })
+    }
+  }
+
+  private fun createLiteralsPatcher(visitor: MethodVisitor, access: Int, name: String, desc: String): MethodVisitor {
     return object : GeneratorAdapter(api, visitor, access, name, desc) {
       override fun visitLdcInsn(constant: Any) {
         if (constant is String) {
@@ -68,9 +150,41 @@ class StringLiteralsClassPatcher(
         logger.info("{}.{}{}:", className, name, desc)
         logger.info("  Obfuscating string literal: \"{}\"", string)
         val stringId = stringRegistry.registerString(string)
-        push(stringId)
-        invokeStatic(deobfuscator.type.toAsmType(), deobfuscator.deobfuscationMethod)
+        if (canUseConstantDynamic) {
+          super.visitLdcInsn(newStringConstant(stringId))
+        } else {
+          push(stringId)
+          invokeStatic(deobfuscator.type.toAsmType(), deobfuscator.deobfuscationMethod)
+        }
       }
     }
   }
+
+  // Equal constants are merged by the constant pool, so every literal is resolved once per class.
+  // The JDK bootstrap calls getString(id), so the runtime library needs no bootstrap of its own.
+  private fun newStringConstant(stringId: Long): ConstantDynamic {
+    val getString = Handle(
+      Opcodes.H_INVOKESTATIC,
+      deobfuscator.type.internalName,
+      deobfuscator.deobfuscationMethod.name,
+      deobfuscator.deobfuscationMethod.descriptor,
+      false
+    )
+    return ConstantDynamic(STRING_CONSTANT_NAME, STRING_DESCRIPTOR, RESOLVE_STRING_HANDLE, getString, stringId)
+  }
+
+  companion object {
+    private const val STRING_CONSTANT_NAME = "string"
+    private val RESOLVE_STRING_HANDLE = Handle(
+      Opcodes.H_INVOKESTATIC,
+      "java/lang/invoke/ConstantBootstraps",
+      "invoke",
+      "(Ljava/lang/invoke/MethodHandles\$Lookup;Ljava/lang/String;Ljava/lang/Class;" +
+        "Ljava/lang/invoke/MethodHandle;[Ljava/lang/Object;)Ljava/lang/Object;",
+      false
+    )
+    private const val LITERAL_FIELD_PREFIX = "lsparanoid\$literal\$"
+    private const val LITERAL_FIELD_ACCESS = Opcodes.ACC_PRIVATE or Opcodes.ACC_STATIC or Opcodes.ACC_SYNTHETIC
+    private val STRING_DESCRIPTOR = Type.getDescriptor(String::class.java)
+  }
 }
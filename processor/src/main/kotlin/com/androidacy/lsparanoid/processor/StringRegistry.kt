@@ -18,38 +18,57 @@
 package com.androidacy.lsparanoid.processor
 
 import com.androidacy.lsparanoid.DeobfuscatorHelper
+import com.androidacy.lsparanoid.PoolCipher
 import com.androidacy.lsparanoid.RandomHelper
+import com.androidacy.lsparanoid.processor.model.PoolFormat
 import java.io.File
 import java.io.Closeable
 import java.io.DataOutputStream
 import java.io.FileOutputStream
+import java.io.ByteArrayInputStream
 import java.io.DataInputStream
 import java.io.FileInputStream
+import java.io.InputStream
 
 interface StringRegistry : Closeable {
   fun registerString(string: String): Long
 
+  // Returns the seed carried in the low 32 bits of every ID
+  fun getSeed(): Int
+
+  // Returns the position of a registered string in the pool
+  fun getIndex(id: Long): Long
+
   @Deprecated("Use streamChunks for better memory efficiency", ReplaceWith("streamChunks(consumer)"))
   fun getAllChunks(): List<String>
 
   fun streamChunks(consumer: (String) -> Unit)
   fun getChunkCount(): Int
+
+  // Returns two values per chunk: the unit index within its string of the first unit of the chunk
+  // and the number of units of that string from the chunk start on, or 0 and 0 when a string
+  // starts there
+  fun getChunkBoundaries(): IntArray
   fun getTotalLength(): Long
   fun copyDataTo(output: java.io.OutputStream)
   fun getDataAsByteArray(): ByteArray
 }
 
-class StringRegistryImpl(
-  seed: Int
+class StringRegistryImpl @JvmOverloads constructor(
+  seed: Int,
+  private val format: PoolFormat = PoolFormat.V1,
+  private val packLatin1: Boolean = false
 ) : StringRegistry {
 
   private val seed = seed.toLong() and 0xffff_ffffL
+  private val cipher = if (format == PoolFormat.AES_CTR) PoolCipher(seed) else null
   private val tempFile = File.createTempFile("lsparanoid-", ".tmp").apply {
     deleteOnExit()
   }
   private var length = 0L
   private val writer = DataOutputStream(FileOutputStream(tempFile))
   private val stringToIdMap = mutableMapOf<String, Long>()
+  private val chunkBoundaries = mutableMapOf<Int, Pair<Int, Int>>()
 
   override fun registerString(string: String): Long {
     // Return existing ID if string was already registered (deduplication)
@@ -58,8 +77,15 @@ class StringRegistryImpl(
     if (string.length > 0xFFFF) {
       throw IllegalArgumentException("String length ${string.length} exceeds maximum of 65535 characters")
     }
+    if (packLatin1 && string.length > 0x7FFF) {
+      throw IllegalArgumentException(
+        "String length ${string.length} exceeds maximum of 32767 characters in pools with packed Latin-1 strings"
+      )
+    }
+    val units = encodeUnits(string)
     var mask = 0L
     var state = RandomHelper.seed(seed)
+    val keystreamBase = state
     state = RandomHelper.next(state)
     mask = mask or (state and 0xffff_0000_0000L)
     state = RandomHelper.next(state)
@@ -67,14 +93,41 @@ class StringRegistryImpl(
     val index = length
     val id = seed or ((index shl 32) xor mask)
 
-    state = RandomHelper.next(state)
-    writer.writeChar((((state ushr 32) and 0xffffL) xor string.length.toLong()).toInt())
-
-    for (char in string) {
-      state = RandomHelper.next(state)
-      writer.writeChar((((state ushr 32) and 0xffffL) xor char.code.toLong()).toInt())
+    when (format) {
+      PoolFormat.V1 -> {
+        for (value in units) {
+          state = RandomHelper.next(state)
+          writer.writeChar((((state ushr 32) and 0xffffL) xor value.toLong()).toInt())
+        }
+      }
+      PoolFormat.V2 -> {
+        // Unit j, the length being unit 0, is masked with lane j % 4 of keystream word j / 4
+        var counter = keystreamBase
+        var word = 0L
+        for (unit in units.indices) {
+          if (unit and 3 == 0) {
+            counter += RandomHelper.KEYSTREAM_GAMMA
+            word = RandomHelper.mix64(counter)
+          }
+          writer.writeChar(((word ushr ((unit and 3) shl 4)).toInt() xor units[unit]) and 0xffff)
+        }
+      }
+      PoolFormat.AES_CTR -> {
+        // Written in plaintext, the chunks are encrypted when the pool is read back
+        for (value in units) {
+          writer.writeChar(value)
+        }
+      }
     }
-    length += string.length + 1
+    // Record the strings that continue into the next chunk
+    val end = index + units.size
+    var boundary = (index / DeobfuscatorHelper.MAX_CHUNK_LENGTH + 1) * DeobfuscatorHelper.MAX_CHUNK_LENGTH
+    while (boundary < end) {
+      chunkBoundaries[(boundary / DeobfuscatorHelper.MAX_CHUNK_LENGTH).toInt()] =
+        (boundary - index).toInt() to (end - boundary).toInt()
+      boundary += DeobfuscatorHelper.MAX_CHUNK_LENGTH
+    }
+    length = end
 
     // Cache the ID for deduplication
     stringToIdMap[string] = id
@@ -82,6 +135,37 @@ class StringRegistryImpl(
     return id
   }
 
+  // Returns the units of a string before encryption: the length unit, then the characters. With
+  // packLatin1, the length unit is (length << 1) | latin1, and a Latin-1 string stores two
+  // characters per unit, the first one in the high byte and a zero low byte after an odd last one.
+  private fun encodeUnits(string: String): IntArray {
+    if (!packLatin1) {
+      return IntArray(string.length + 1) { if (it == 0) string.length else string[it - 1].code }
+    }
+    if (string.any { it.code >= 0x100 }) {
+      return IntArray(string.length + 1) { if (it == 0) string.length shl 1 else string[it - 1].code }
+    }
+    val units = IntArray((string.length + 1) / 2 + 1)
+    units[0] = (string.length shl 1) or 1
+    for (i in string.indices) {
+      units[i / 2 + 1] = units[i / 2 + 1] or (string[i].code shl (if (i and 1 == 0) 8 else 0))
+    }
+    return units
+  }
+
+  override fun getSeed(): Int {
+    return seed.toInt()
+  }
+
+  override fun getIndex(id: Long): Long {
+    var state = RandomHelper.seed(id and 0xffff_ffffL)
+    state = RandomHelper.next(state)
+    val low = (state ushr 32) and 0xffffL
+    state = RandomHelper.next(state)
+    val high = (state ushr 16) and 0xffff_0000L
+    return ((id ushr 32) xor low xor high) and 0xffff_ffffL
+  }
+
   @Deprecated("Use streamChunks for better memory efficiency", ReplaceWith("streamChunks(consumer)"))
   override fun getAllChunks(): List<String> {
     // This implementation remains for compatibility but should not be used for large datasets.
@@ -95,7 +179,7 @@ class StringRegistryImpl(
     if (length == 0L) {
       return
     }
-    DataInputStream(FileInputStream(tempFile)).use { reader ->
+    DataInputStream(openData()).use { reader ->
       val buffer = CharArray(DeobfuscatorHelper.MAX_CHUNK_LENGTH)
       var charsRead = 0
       while (charsRead < length) {
@@ -117,6 +201,15 @@ class StringRegistryImpl(
     return ((length + DeobfuscatorHelper.MAX_CHUNK_LENGTH - 1) / DeobfuscatorHelper.MAX_CHUNK_LENGTH).toInt()
   }
 
+  override fun getChunkBoundaries(): IntArray {
+    val boundaries = IntArray(getChunkCount() * 2)
+    for ((chunkIndex, boundary) in chunkBoundaries) {
+      boundaries[chunkIndex * 2] = boundary.first
+      boundaries[chunkIndex * 2 + 1] = boundary.second
+    }
+    return boundaries
+  }
+
   override fun getTotalLength(): Long {
     writer.flush()
     return length
@@ -124,14 +217,27 @@ class StringRegistryImpl(
 
   override fun copyDataTo(output: java.io.OutputStream) {
     writer.flush()
-    tempFile.inputStream().use { input ->
+    openData().use { input ->
       input.copyTo(output)
     }
   }
 
   override fun getDataAsByteArray(): ByteArray {
     writer.flush()
-    return tempFile.readBytes()
+    val data = tempFile.readBytes()
+    if (cipher != null) {
+      val bytesPerChunk = DeobfuscatorHelper.MAX_CHUNK_LENGTH * 2
+      for (chunkIndex in 0 until getChunkCount()) {
+        val offset = chunkIndex * bytesPerChunk
+        cipher.crypt(data, offset, minOf(bytesPerChunk, data.size - offset), chunkIndex)
+      }
+    }
+    return data
+  }
+
+  // Opens the pool data as it is embedded, encrypting it chunk by chunk first in AES-CTR pools
+  private fun openData(): InputStream {
+    return if (cipher == null) FileInputStream(tempFile) else ByteArrayInputStream(getDataAsByteArray())
   }
 
   override fun close() {
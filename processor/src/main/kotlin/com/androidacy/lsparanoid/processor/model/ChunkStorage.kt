@@ -0,0 +1,32 @@
+/*
+ * Copyright 2023 LSPosed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.androidacy.lsparanoid.processor.model
+
+enum class ChunkStorage {
+  // Each chunk is a Base64 string constant decoded to bytes in its class initializer
+  BASE64,
+
+  // Each chunk is the raw ciphertext stored as a string constant and copied out with toCharArray
+  RAW_STRING,
+
+  // The whole pool is written as a single binary resource next to the deobfuscator class
+  RESOURCE,
+
+  // Each chunk is a long array initializer in its load method, with no constant pinning the data
+  ARRAY
+}
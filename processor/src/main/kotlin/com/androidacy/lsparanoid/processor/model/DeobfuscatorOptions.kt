@@ -0,0 +1,40 @@
+/*
+ * Copyright 2023 LSPosed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.androidacy.lsparanoid.processor.model
+
+data class DeobfuscatorOptions(
+  // Number of decoded strings kept by the generated deobfuscator, 0 disables the cache
+  val decodeCacheSize: Int = 0,
+  // How the encrypted chunks are embedded into the generated classes
+  val chunkStorage: ChunkStorage = ChunkStorage.BASE64,
+  // Which string literals are cached in static fields of the classes using them, opt-in since it adds fields
+  val cacheMode: CacheMode = CacheMode.NONE,
+  // Whether string literals of classes targeting Java 11 or newer become dynamic constants, JVM only
+  val useConstantDynamic: Boolean = false,
+  // Whether the generated deobfuscator returns the same instance for an ID while it is reachable
+  val canonicalizeStrings: Boolean = false,
+  // Whether loaded chunks are held through soft references instead of strong ones
+  val softChunkReferences: Boolean = false,
+  // How strings are encrypted in the pool
+  val poolFormat: PoolFormat = PoolFormat.V1,
+  // Whether chunks are decrypted as a whole when loaded instead of string by string on every lookup
+  val decryptChunksOnce: Boolean = false,
+  // Whether Latin-1 strings are stored two characters per pool unit
+  val packLatin1: Boolean = false,
+  // Whether chunk classes embed their chunk deflated, inflated when the chunk is first loaded
+  val compressChunks: Boolean = false
+)
@@ -0,0 +1,29 @@
+/*
+ * Copyright 2023 LSPosed
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.androidacy.lsparanoid.processor.model
+
+enum class PoolFormat {
+  // Every UTF-16 unit is masked with one 16-bit step of RandomHelper.next
+  V1,
+
+  // Every four UTF-16 units are masked with one 64-bit RandomHelper.mix64 word
+  V2,
+
+  // Every chunk is encrypted on its own with AES-CTR under a key derived from the seed. The seed is
+  // in every string ID, so this obfuscates no better than V1 or V2
+  AES_CTR
+}
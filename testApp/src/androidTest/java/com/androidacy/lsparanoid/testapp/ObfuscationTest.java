@@ -16,7 +16,7 @@ import org.junit.runner.RunWith;
  *
  * This test ensures that:
  * 1. Activities with @Obfuscate annotation can be launched
- * 2. Obfuscated strings can be retrieved via reflection (ensureChunkLoaded)
+ * 2. Obfuscated strings are decoded through the generated chunk loader
  * 3. The app doesn't crash with NoSuchMethodException in minified builds
  * 4. Chunk loading works correctly for multiple string accesses
  */